@@ -0,0 +1,123 @@
+package com.example.contacts.benchmarks;
+
+import com.example.contacts.repository.IndexedContact;
+import com.example.contacts.service.ContactSearchIndex;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One page (51 rows, as the listing asks for) of a contacts search, answered by
+ * {@link ContactSearchIndex} and by the listing's former {@code UPPER(name) LIKE '%x%'} query on an
+ * in-memory H2 table with an index on {@code name}. H2 keeps the rows in memory, so the LIKE numbers
+ * are a lower bound for MySQL, which scans the same way but from the buffer pool or disk.
+ * The index also searches addresses; the LIKE query only names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ContactSearchBenchmark {
+
+    private static final int PAGE = 51;
+    private static final String[] FIRST = {"Anna", "Bob", "Carla", "Dmitri", "Elena", "Farid", "Greta", "Hugo",
+            "Ines", "Jonas", "Katrin", "Luca", "Marta", "Nils", "Olga", "Pedro", "Quinn", "Rosa", "Sven", "Tamara"};
+    private static final String[] LAST = {"Martin", "Schmidt", "Rossi", "Novak", "Jensen", "Garcia", "Kowalski",
+            "Dubois", "Silva", "Nagy", "Popescu", "Berg", "Costa", "Meyer", "Horvat", "Larsen"};
+    private static final String[] STREETS = {"Oak Street", "Mill Road", "High Street", "Station Road", "Elm Avenue",
+            "Church Lane", "Park Road", "Victoria Street"};
+
+    @Param({"1000000"})
+    public int contacts;
+
+    /** A common name prefix, a rarer infix, a digit run and a query that matches nothing. */
+    @Param({"mar", "owals", "4711", "qxz"})
+    public String query;
+
+    private ContactSearchIndex index;
+    private Connection connection;
+    private PreparedStatement like;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        Random random = new Random(42);
+        List<IndexedContact> rows = new ArrayList<>(contacts);
+        for (int i = 1; i <= contacts; i++) {
+            String name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)] + " " + i;
+            String address = random.nextInt(200) + " " + STREETS[random.nextInt(STREETS.length)] + ", Springfield";
+            rows.add(new IndexedContact((long) i, name, address, 0));
+        }
+        index = new ContactSearchIndex();
+        index.load(rows.iterator());
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:contacts-search;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("CREATE TABLE contacts (id BIGINT PRIMARY KEY, name VARCHAR(200) NOT NULL, address VARCHAR(500) NOT NULL)");
+            ddl.execute("CREATE INDEX idx_contacts_name ON contacts (name)");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO contacts (id, name, address) VALUES (?, ?, ?)")) {
+            for (IndexedContact row : rows) {
+                insert.setLong(1, row.id());
+                insert.setString(2, row.name());
+                insert.setString(3, row.address());
+                insert.addBatch();
+                if (row.id() % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        like = connection.prepareStatement("""
+                SELECT id, name, address FROM contacts
+                WHERE UPPER(name) LIKE UPPER(?) ESCAPE '\\'
+                ORDER BY name ASC, id ASC LIMIT ?""");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        like.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public List<ContactSearchIndex.Hit> trigramIndex() {
+        return index.search(query, null, PAGE);
+    }
+
+    @Benchmark
+    public int likeQuery() throws SQLException {
+        like.setString(1, "%" + query + "%");
+        like.setInt(2, PAGE);
+        int rows = 0;
+        try (ResultSet result = like.executeQuery()) {
+            while (result.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.contacts.benchmarks;
+
+import com.example.contacts.repository.IndexedContact;
+import com.example.contacts.service.ContactSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One type-ahead request ({@code k=10}) against {@link ContactSearchIndex#suggest} over a million
+ * distinct names, for a one-letter prefix, a longer one and one that matches nothing. The heap held
+ * by the sorted names is printed once per trial, as the {@code contacts.suggest.memory*} gauges
+ * report it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ContactSuggestBenchmark {
+
+    private static final String[] FIRST = {"Anna", "Bob", "Carla", "Dmitri", "Elena", "Farid", "Greta", "Hugo",
+            "Ines", "Jonas", "Katrin", "Luca", "Marta", "Nils", "Olga", "Pedro", "Quinn", "Rosa", "Sven", "Tamara"};
+    private static final String[] LAST = {"Martin", "Schmidt", "Rossi", "Novak", "Jensen", "Garcia", "Kowalski",
+            "Dubois", "Silva", "Nagy", "Popescu", "Berg", "Costa", "Meyer", "Horvat", "Larsen"};
+
+    @Param({"1000000"})
+    public int contacts;
+
+    @Param({"m", "marta nov", "qx"})
+    public String prefix;
+
+    private ContactSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<IndexedContact> rows = new ArrayList<>(contacts);
+        for (int i = 1; i <= contacts; i++) {
+            String name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)] + " " + i;
+            rows.add(new IndexedContact((long) i, name, "Main Street", 0));
+        }
+        index = new ContactSearchIndex();
+        index.load(rows.iterator());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        index.bindTo(registry);
+        System.out.printf("%n%.0f names, %.1f MB, %.1f MB per million names%n",
+                registry.get("contacts.suggest.names").gauge().value(),
+                registry.get("contacts.suggest.memory").gauge().value() / 1e6,
+                registry.get("contacts.suggest.memory.per.million.names").gauge().value() / 1e6);
+    }
+
+    @Benchmark
+    public List<String> suggest() {
+        return index.suggest(prefix, 10);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.contacts.benchmarks;
+
+import com.example.contacts.repository.ContactSummary;
+import com.example.contacts.service.ContactCsvWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The CSV export loop without the database: rows are prepared up front and written to a stream
+ * that only counts bytes. {@code quotedPercent} is the share of names and addresses that contain
+ * a comma or quote and therefore go through the quoting branch of {@link ContactCsvWriter#escape}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvExportBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"0", "50"})
+    public int quotedPercent;
+
+    private List<ContactSummary> contacts;
+    private String[] fields;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Instant updatedAt = Instant.parse("2024-10-18T08:30:00Z");
+        contacts = new ArrayList<>(rows);
+        fields = new String[rows * 2];
+        for (int i = 0; i < rows; i++) {
+            boolean quoted = random.nextInt(100) < quotedPercent;
+            String name = quoted ? "Doe, Jane " + i : "Jane Doe " + i;
+            String address = quoted ? i + " \"Old\" Mill Road, Springfield" : i + " Old Mill Road Springfield";
+            contacts.add(new ContactSummary((long) i, name, address, i % 3 == 0, null, null, "alice", updatedAt));
+            fields[i * 2] = name;
+            fields[i * 2 + 1] = address;
+        }
+    }
+
+    @Benchmark
+    public long exportCsv() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        ContactCsvWriter.write(contacts.iterator(), out);
+        return out.bytes;
+    }
+
+    @Benchmark
+    public void escape(Blackhole blackhole) {
+        for (String field : fields) {
+            blackhole.consume(ContactCsvWriter.escape(field));
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
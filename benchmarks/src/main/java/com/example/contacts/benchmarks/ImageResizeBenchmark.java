@@ -0,0 +1,66 @@
+package com.example.contacts.benchmarks;
+
+import com.example.contacts.service.ImageScaler;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resizing a decoded upload to the 500px stored picture: the former {@code getScaledInstance}
+ * path against {@link ImageScaler}. Sources use the raster types ImageIO decodes JPEG and PNG
+ * files into, so conversion costs are part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageResizeBenchmark {
+
+    private static final int TARGET_WIDTH = 500;
+
+    @Param({"400", "1600", "4000"})
+    public int sourceWidth;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    private BufferedImage source;
+    private int targetType;
+
+    @Setup
+    public void setUp() {
+        int height = sourceWidth * 3 / 4;
+        source = new BufferedImage(sourceWidth, height,
+                "png".equals(format) ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < sourceWidth; x++) {
+                source.setRGB(x, y, 0xFF000000 | (x * 255 / sourceWidth) << 16 | (y * 255 / height) << 8 | random.nextInt(256));
+            }
+        }
+        targetType = "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+
+    @Benchmark
+    public BufferedImage legacyScaledInstance() {
+        return LegacyImageResizer.resizeIfNecessary(source, TARGET_WIDTH, format);
+    }
+
+    @Benchmark
+    public BufferedImage progressiveHalving() {
+        return ImageScaler.scaleToWidth(source, TARGET_WIDTH, targetType);
+    }
+}
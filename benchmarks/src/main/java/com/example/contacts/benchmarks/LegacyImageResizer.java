@@ -0,0 +1,55 @@
+package com.example.contacts.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * The resize path contacts-service used before the progressive scaler: an area-averaging
+ * {@code getScaledInstance} drawn into a new raster, plus a full copy to convert small images.
+ * Kept only as the baseline of {@link ImageResizeBenchmark}.
+ */
+final class LegacyImageResizer {
+
+    private LegacyImageResizer() {
+    }
+
+    static BufferedImage resizeIfNecessary(BufferedImage source, int maxWidth, String formatName) {
+        if (source.getWidth() <= maxWidth) {
+            return ensureCompatibleImage(source, formatName);
+        }
+        int newWidth = maxWidth;
+        int newHeight = (int) Math.round(((double) newWidth / source.getWidth()) * source.getHeight());
+        int imageType = "png".equals(formatName) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage resized = new BufferedImage(newWidth, newHeight, imageType);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            Image scaled = source.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
+            graphics.drawImage(scaled, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private static BufferedImage ensureCompatibleImage(BufferedImage source, String formatName) {
+        boolean needsConversion = ("png".equals(formatName) && source.getType() != BufferedImage.TYPE_INT_ARGB)
+                || ("jpg".equals(formatName) && source.getType() != BufferedImage.TYPE_INT_RGB);
+        if (!needsConversion) {
+            return source;
+        }
+        int imageType = "png".equals(formatName) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), imageType);
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(source, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return converted;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.contacts.benchmarks;
+
+import com.example.contacts.service.ContactService;
+import com.example.contacts.service.PictureProcessor;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The whole upload pipeline of {@link PictureProcessor}: header probe, subsampled decode, resize
+ * to the stored picture, encode, and rendering of the default thumbnails. Uploads are read from
+ * a file, as in the background processing mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PictureProcessingBenchmark {
+
+    @Param({"400", "1600", "4000"})
+    public int sourceWidth;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    private final PictureProcessor processor = new PictureProcessor(List.of(48, 128), 40_000_000);
+    private Path upload;
+
+    @Setup
+    public void setUp() throws IOException {
+        int height = sourceWidth * 3 / 4;
+        BufferedImage image = new BufferedImage(sourceWidth, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < sourceWidth; x++) {
+                image.setRGB(x, y, (x * 255 / sourceWidth) << 16 | (y * 255 / height) << 8 | random.nextInt(64));
+            }
+        }
+        upload = Files.createTempFile("picture-benchmark", "." + format);
+        ImageIO.write(image, format, upload.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(upload);
+    }
+
+    @Benchmark
+    public ContactService.PicturePayload process() throws IOException {
+        return processor.process(upload, format);
+    }
+}
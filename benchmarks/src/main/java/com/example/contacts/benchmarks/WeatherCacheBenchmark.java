@@ -0,0 +1,109 @@
+package com.example.contacts.benchmarks;
+
+import com.example.contacts.config.WeatherHttpClientConfig;
+import com.example.contacts.dto.WeatherInfo;
+import com.example.contacts.service.WeatherClient;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.client.RestClient;
+
+/**
+ * {@link WeatherClient#fetchWeather} at a given cache hit ratio. The client is wired by Spring with
+ * its real pooled HTTP transport; misses use addresses never seen before and go over loopback to
+ * a stub weather-service that answers immediately, so the miss cost is the client's own overhead
+ * plus one local round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class WeatherCacheBenchmark {
+
+    private static final int HOT_ADDRESSES = 1_000;
+    private static final byte[] RESPONSE =
+            "{\"location\":\"Benchmark\",\"description\":\"Sunny\",\"temperatureCelsius\":21.5}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"1.0", "0.9", "0.5"})
+    public double hitRatio;
+
+    private HttpServer server;
+    private AnnotationConfigApplicationContext context;
+    private WeatherClient weatherClient;
+    private final AtomicLong misses = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Without TCP_NODELAY the stub's separate header and body writes meet delayed ACKs, which
+        // adds ~40ms to every miss and would swamp what is measured.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/weather", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            exchange.getResponseBody().write(RESPONSE);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "app.weather.base-url", "http://127.0.0.1:" + server.getAddress().getPort())));
+        context.registerBean(RestClient.Builder.class, () -> RestClient.builder());
+        context.register(WeatherHttpClientConfig.class, WeatherClient.class);
+        context.refresh();
+        weatherClient = context.getBean(WeatherClient.class);
+        for (int i = 0; i < HOT_ADDRESSES; i++) {
+            weatherClient.fetchWeather(hotAddress(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        server.stop(0);
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public WeatherInfo fetchWeather(Picker picker) {
+        if (picker.random.nextDouble() < hitRatio) {
+            return weatherClient.fetchWeather(hotAddress(picker.random.nextInt(HOT_ADDRESSES)));
+        }
+        return weatherClient.fetchWeather("Cold Street " + misses.incrementAndGet());
+    }
+
+    private static String hotAddress(int i) {
+        return i + " Main Street";
+    }
+}
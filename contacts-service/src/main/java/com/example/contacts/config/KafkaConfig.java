@@ -1,41 +1,71 @@
 package com.example.contacts.config;
 
-import com.example.kafka.EditContactEvent;
-import com.example.kafka.SignupEvent;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.listener.ContainerProperties;
 
 @Configuration
 public class KafkaConfig {
 
+    /**
+     * Producer for {@link com.example.contacts.service.OutboxRelay}. Payloads are already JSON, so
+     * values are sent as strings. The relay hands over a whole batch at a time, which lets the
+     * producer fill larger, compressed requests instead of sending one record per round trip.
+     */
     @Bean
-    public ProducerFactory<String, ?> signupProducerFactory(KafkaProperties properties) {
+    public ProducerFactory<String, String> outboxProducerFactory(
+            KafkaProperties properties,
+            @Value("${app.outbox.producer.linger-ms:20}") int lingerMs,
+            @Value("${app.outbox.producer.batch-size:65536}") int batchSize,
+            @Value("${app.outbox.producer.compression:lz4}") String compression,
+            @Value("${app.outbox.producer.acks:all}") String acks,
+            @Value("${app.outbox.producer.idempotence:true}") boolean idempotence) {
         Map<String, Object> config = new HashMap<>(properties.buildProducerProperties(null));
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        config.put(ProducerConfig.ACKS_CONFIG, acks);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
         return new DefaultKafkaProducerFactory<>(config);
     }
 
     @Bean
-    public KafkaTemplate<String, SignupEvent> signupKafkaTemplate(ProducerFactory<String, SignupEvent> factory) {
-        return new KafkaTemplate<>(factory);
+    public KafkaTemplate<String, String> outboxKafkaTemplate(ProducerFactory<String, String> outboxProducerFactory) {
+        return new KafkaTemplate<>(outboxProducerFactory);
     }
 
+    /**
+     * Listeners for {@link com.example.contacts.service.ContactChangeStream}. Every node reads the
+     * whole topic in a group of its own and only cares about what arrives while it runs, so offsets
+     * are never committed and a (re)started node begins at the end of the topic.
+     */
     @Bean
-    public KafkaTemplate<String, EditContactEvent> editContactKafkaTemplate(ProducerFactory<String, EditContactEvent> factory) {
-        return new KafkaTemplate<>(factory);
+    public ConcurrentKafkaListenerContainerFactory<String, Object> contactStreamListenerFactory(KafkaProperties properties) {
+        Map<String, Object> config = new HashMap<>(properties.buildConsumerProperties(null));
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(config));
+        // Records are never acknowledged, so the container never commits them either.
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setAutoStartup(properties.getListener().isAutoStartup());
+        return factory;
     }
 
     @Bean
@@ -56,4 +86,13 @@ public class KafkaConfig {
             .build();
     }
 
+    @Bean
+    public NewTopic contactChangesTopic(@Value("${app.kafka.topics.contactChanges}") String topicName) {
+        return TopicBuilder
+            .name(topicName)
+            .partitions(10)
+            .replicas(3)
+            .build();
+    }
+
 }
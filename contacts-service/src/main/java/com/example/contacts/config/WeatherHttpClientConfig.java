@@ -0,0 +1,51 @@
+package com.example.contacts.config;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * HTTP transport used by {@code WeatherClient}: a pooled keep-alive Apache client with connect
+ * and read timeouts, so a hung weather-service instance cannot hold request threads indefinitely.
+ */
+@Configuration
+public class WeatherHttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient weatherHttpClient(@Value("${app.weather.connect-timeout-ms:500}") long connectTimeoutMs,
+                                                 @Value("${app.weather.read-timeout-ms:2000}") long readTimeoutMs,
+                                                 @Value("${app.weather.max-connections:20}") int maxConnections) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnections)
+                        .setDefaultConnectionConfig(connectionConfig)
+                        .build())
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(TimeValue.of(30, TimeUnit.SECONDS))
+                .build();
+    }
+
+    @Bean
+    public ClientHttpRequestFactory weatherRequestFactory(CloseableHttpClient weatherHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(weatherHttpClient);
+    }
+}
@@ -1,15 +1,30 @@
 package com.example.contacts.controller;
 
+import com.example.contacts.dto.ContactChangesResponse;
 import com.example.contacts.dto.ContactRequest;
 import com.example.contacts.dto.ContactResponse;
+import com.example.contacts.dto.PictureStatusResponse;
+import com.example.contacts.model.PictureStatus;
+import com.example.contacts.repository.PictureMetadata;
+import com.example.contacts.service.ContactChangeStream;
+import com.example.contacts.service.ContactListingCache;
 import com.example.contacts.service.ContactService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -20,26 +35,89 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @Slf4j
 @RequestMapping("/api/contacts")
 public class ContactController {
 
+    // Tomcat's sendfile contract: when the connector advertises support, a response that sets
+    // these attributes and writes no body has the file copied to the socket by the kernel.
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ContactService contactService;
+    @Autowired
+    private ContactListingCache contactListingCache;
+    @Autowired
+    private ContactChangeStream contactChangeStream;
+    @Value("${app.contacts.export.gzip-enabled:true}")
+    private boolean exportGzipEnabled;
 
+    /**
+     * Serves a contacts page as cached JSON with an ETag naming the change feed position, weather
+     * epoch and query it was built for. A client that sends that ETag back gets 304 without the
+     * page being read or serialized; any change to the contacts gives every page a new ETag. A page
+     * with pending or unavailable weather gets no ETag, so the client asks again in full.
+     */
     @GetMapping
-    public List<ContactResponse> list(@RequestParam(value = "search", required = false) String search) {
+    public ResponseEntity<byte[]> list(@RequestParam(value = "search", required = false) String search,
+                                       @RequestParam(value = "cursor", required = false) String cursor,
+                                       @RequestParam(value = "limit", required = false) Integer limit,
+                                       WebRequest webRequest) {
         if (search == null || search.isBlank()) {
-            log.info("Fetching contacts list without search filter");
+            log.info("Fetching contacts page without search filter");
         } else {
-            log.info("Fetching contacts list with search='{}'", search);
+            log.info("Fetching contacts page with search='{}'", search);
+        }
+        ContactListingCache.Key key = contactListingCache.key(search, cursor, limit);
+        String etag = contactListingCache.etag(key);
+        // Compared by hand: checkNotModified would also put the ETag on a page that may turn out incomplete.
+        String ifNoneMatch = webRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            log.info("Contacts page not modified");
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).eTag(etag).build();
         }
-        return contactService.listContacts(search);
+        ContactListingCache.Page page = contactListingCache.page(key, () -> contactService.listContacts(search, cursor, limit));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache());
+        if (page.complete()) {
+            response.eTag(etag);
+        }
+        return response.body(page.body());
+    }
+
+    /** Delta sync for clients that keep a loaded list up to date; see {@link ContactService#changesSince}. */
+    @GetMapping("/changes")
+    public ResponseEntity<ContactChangesResponse> changes(@RequestParam(value = "since", required = false) Long since) {
+        log.info("Fetching contact changes since {}", since);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(contactService.changesSince(since));
+    }
+
+    /** Server-sent notifications of created, edited and deleted contacts; see {@link ContactChangeStream}. */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        log.debug("Opening contact change stream, {} already connected", contactChangeStream.clients());
+        return contactChangeStream.subscribe();
+    }
+
+    @GetMapping("/suggest")
+    public List<String> suggest(@RequestParam(value = "prefix", required = false) String prefix,
+                                @RequestParam(value = "k", required = false) Integer k) {
+        // Called on every keystroke, so kept out of the info log.
+        log.debug("Suggesting contact names for prefix='{}'", prefix);
+        return contactService.suggestNames(prefix, k);
     }
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -47,6 +125,9 @@ public class ContactController {
                                                   @AuthenticationPrincipal UserDetails userDetails) {
         log.info("User '{}' creating new contact '{}'", userDetails.getUsername(), request.getName());
         ContactResponse response = contactService.create(request, userDetails.getUsername());
+        if (pictureAccepted(request, response)) {
+            return accepted(response);
+        }
         return ResponseEntity.status(201).body(response);
     }
 
@@ -56,9 +137,33 @@ public class ContactController {
                                                   @AuthenticationPrincipal UserDetails userDetails) {
         log.info("User '{}' updating contact id={} with name='{}'", userDetails.getUsername(), id, request.getName());
         ContactResponse response = contactService.update(id, request, userDetails.getUsername());
+        if (pictureAccepted(request, response)) {
+            return accepted(response);
+        }
         return ResponseEntity.ok(response);
     }
 
+    private static boolean pictureAccepted(ContactRequest request, ContactResponse response) {
+        return request.getPicture() != null && !request.getPicture().isEmpty()
+                && response.getPictureStatus() == PictureStatus.PROCESSING;
+    }
+
+    /**
+     * The contact is saved but its new picture is still being processed: 202 with the status URL
+     * to poll in {@code Location}.
+     */
+    private static ResponseEntity<ContactResponse> accepted(ContactResponse response) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/contacts/" + response.getId() + "/picture/status"))
+                .body(response);
+    }
+
+    @GetMapping("/{id}/picture/status")
+    public ResponseEntity<PictureStatusResponse> pictureStatus(@PathVariable("id") Long id) {
+        PictureStatusResponse status = contactService.pictureStatus(id);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(status);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable("id") Long id,
                                        @AuthenticationPrincipal UserDetails userDetails) {
@@ -68,26 +173,99 @@ public class ContactController {
     }
 
     @GetMapping(value = "/export", produces = "text/csv")
-    public ResponseEntity<String> export(@AuthenticationPrincipal UserDetails userDetails) {
-        log.info("User '{}' exporting contacts to CSV", userDetails.getUsername());
-        String csv = contactService.exportCsv(userDetails.getUsername());
+    public ResponseEntity<StreamingResponseBody> export(@AuthenticationPrincipal UserDetails userDetails,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        String username = userDetails.getUsername();
+        boolean gzip = exportGzipEnabled && acceptsGzip(acceptEncoding);
+        log.info("User '{}' exporting contacts to CSV (gzip={})", username, gzip);
         String filename = URLEncoder.encode("contacts.csv", StandardCharsets.UTF_8);
-        return ResponseEntity.ok()
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + filename)
-                .contentType(MediaType.parseMediaType("text/csv"))
-                .body(csv);
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.parseMediaType("text/csv"));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 8 * 1024);
+                contactService.exportCsv(username, compressed);
+                compressed.finish();
+            } else {
+                contactService.exportCsv(username, out);
+            }
+        });
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
+    /**
+     * Serves a contact picture with a strong ETag (content hash) and Last-Modified. Conditional
+     * requests are answered from the metadata alone, so a 304 never reads the picture bytes.
+     * Requests for the current versioned URL ({@code ?v=}) may be cached as immutable. With
+     * {@code ?size=} the smallest pre-generated variant at least that wide is served. Stored
+     * files are handed to Tomcat's sendfile when available and streamed as a {@link Resource}
+     * otherwise, so the bytes are never buffered on the heap.
+     */
     @GetMapping("/{id}/picture")
-    public ResponseEntity<byte[]> getPicture(@PathVariable("id") Long id) {
+    public ResponseEntity<Resource> getPicture(@PathVariable("id") Long id,
+                                               @RequestParam(value = "v", required = false) String version,
+                                               @RequestParam(value = "size", required = false) Integer size,
+                                               WebRequest webRequest,
+                                               HttpServletRequest request) throws IOException {
+        if (size != null && size < 1) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        PictureMetadata metadata = contactService.loadPictureMetadata(id);
+        String key = contactService.pictureKey(metadata, size);
+        String etag = key != null ? "\"" + key + "\"" : null;
+        long lastModified = metadata.updatedAt() != null ? metadata.updatedAt().toEpochMilli() : -1;
+        // A variant that has not been generated yet is answered with the full picture, which must
+        // not be cached forever under the variant's URL.
+        boolean servesRequestedVariant = key == null || !key.equals(metadata.hash()) || contactService.isFullPicture(size);
+        CacheControl cacheControl = version != null && version.equals(ContactService.pictureVersion(metadata.hash()))
+                && servesRequestedVariant
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.noCache();
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            log.info("Picture for contact id={} not modified", id);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
         log.info("Loading picture for contact id={}", id);
-        ContactService.PicturePayload payload = contactService.loadPicture(id);
-        String contentType = payload.contentType();
+        ContactService.StoredPicture picture = contactService.loadPicture(metadata, key);
+        String contentType = picture.contentType();
         MediaType mediaType = (contentType != null && !contentType.isBlank())
                 ? MediaType.parseMediaType(contentType)
                 : MediaType.APPLICATION_OCTET_STREAM;
-        return ResponseEntity.ok()
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                 .contentType(mediaType)
-                .body(payload.data());
+                .cacheControl(cacheControl);
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+        Resource resource = picture.resource();
+        long length = resource.contentLength();
+        response.contentLength(length);
+        if (resource.isFile() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, resource.getFile().getAbsolutePath());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return response.build();
+        }
+        return response.body(resource);
     }
 }
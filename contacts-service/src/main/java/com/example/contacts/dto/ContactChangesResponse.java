@@ -0,0 +1,20 @@
+package com.example.contacts.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactChangesResponse {
+    /** Contacts created or edited since the token, oldest change first. */
+    private List<ContactResponse> changed;
+    /** Ids of contacts deleted since the token. */
+    private List<Long> deleted;
+    /** Token to send as {@code since} next time. */
+    private long token;
+    /** Set when the changes were cut short; ask again with the new token for the rest. */
+    private boolean more;
+}
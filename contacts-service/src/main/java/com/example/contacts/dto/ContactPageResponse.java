@@ -0,0 +1,15 @@
+package com.example.contacts.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactPageResponse {
+    private List<ContactResponse> items;
+    /** Opaque cursor for the following page, {@code null} on the last page. */
+    private String next;
+}
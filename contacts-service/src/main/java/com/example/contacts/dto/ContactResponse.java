@@ -1,5 +1,6 @@
 package com.example.contacts.dto;
 
+import com.example.contacts.model.PictureStatus;
 import java.time.Instant;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,6 +14,12 @@ public class ContactResponse {
     private String name;
     private String address;
     private boolean hasPicture;
+    /** Versioned picture URL; it changes whenever the picture does, so clients may cache it forever. */
+    private String pictureUrl;
+    /** {@code <img srcset>} value with the pre-generated variants of the picture. */
+    private String pictureSrcset;
+    /** {@code PROCESSING} while a new picture is processed in the background; poll the status URL. */
+    private PictureStatus pictureStatus;
     private String ownerUsername;
     private Instant updatedAt;
     private WeatherInfo weather;
@@ -0,0 +1,17 @@
+package com.example.contacts.dto;
+
+import com.example.contacts.model.PictureStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PictureStatusResponse {
+    private Long contactId;
+    private PictureStatus status;
+    /** URL of the current picture; it only changes once a processed upload is {@code READY}. */
+    private String pictureUrl;
+    private String pictureSrcset;
+}
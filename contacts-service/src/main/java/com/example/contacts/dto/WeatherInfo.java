@@ -1,5 +1,6 @@
 package com.example.contacts.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,4 +12,17 @@ public class WeatherInfo {
     private String location;
     private String description;
     private double temperatureCelsius;
+    /** Set when the lookup did not finish before the listing deadline; the real value follows on a later request. */
+    private boolean pending;
+    /** Set on the stand-in used when the weather service could not be reached; not sent to clients. */
+    @JsonIgnore
+    private boolean unavailable;
+
+    public WeatherInfo(String location, String description, double temperatureCelsius) {
+        this(location, description, temperatureCelsius, false);
+    }
+
+    public WeatherInfo(String location, String description, double temperatureCelsius, boolean pending) {
+        this(location, description, temperatureCelsius, pending, false);
+    }
 }
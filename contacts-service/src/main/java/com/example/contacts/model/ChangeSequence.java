@@ -0,0 +1,31 @@
+package com.example.contacts.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * A named counter. Incrementing it locks the row until the transaction ends, so the numbers it
+ * hands out are committed in the order they were taken.
+ */
+@Entity
+@Table(name = "change_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class ChangeSequence {
+
+    @Id
+    @Column(name = "name", length = 50)
+    @EqualsAndHashCode.Include
+    private String name;
+
+    @Column(name = "seq", nullable = false)
+    private long seq;
+}
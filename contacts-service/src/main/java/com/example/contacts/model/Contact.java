@@ -2,16 +2,18 @@ package com.example.contacts.model;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
-import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.time.Instant;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -23,7 +25,7 @@ import lombok.ToString;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-@ToString(exclude = {"owner", "pictureData"})
+@ToString(exclude = "owner")
 public class Contact {
 
     @Id
@@ -37,12 +39,33 @@ public class Contact {
     @Column(nullable = false, length = 500)
     private String address;
 
-    @Lob
-    @Column(name = "picture_data")
-    private byte[] pictureData;
+    // Picture bytes live in ContactPicture; these columns are enough for listings and exports.
+    @Column(name = "has_picture", nullable = false)
+    private boolean hasPicture;
 
-    @Column(name = "picture_content_type", length = 100)
-    private String pictureContentType;
+    @Column(name = "picture_size", nullable = false)
+    private int pictureSize;
+
+    @Column(name = "picture_version", nullable = false)
+    private int pictureVersion;
+
+    /** Hex SHA-256 of the stored picture bytes; doubles as the strong ETag and the URL version. */
+    @Column(name = "picture_hash", length = 64)
+    private String pictureHash;
+
+    /** Set while an upload is processed in the background; the columns above keep the previous picture. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "picture_status", nullable = false, length = 20)
+    private PictureStatus pictureStatus = PictureStatus.READY;
+
+    /** Optimistic lock; also published with edit events so consumers can order and deduplicate them. */
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    /** Position of the last change in the contacts change feed; only ever written by {@code ContactChangeLog}. */
+    @Column(name = "change_seq", nullable = false, updatable = false)
+    private long changeSeq;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
@@ -0,0 +1,51 @@
+package com.example.contacts.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.Lob;
+import jakarta.persistence.MapsId;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Picture bytes of a contact. They live in their own table so that loading a {@link Contact}
+ * never reads the BLOB; the contact row only keeps the denormalized picture metadata.
+ */
+@Entity
+@Table(name = "contact_pictures")
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@ToString(exclude = {"contact", "data"})
+public class ContactPicture {
+
+    @Id
+    @Column(name = "contact_id")
+    @EqualsAndHashCode.Include
+    private Long contactId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "contact_id")
+    private Contact contact;
+
+    @Lob
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    public ContactPicture(Contact contact, byte[] data, String contentType) {
+        this.contact = contact;
+        this.data = data;
+        this.contentType = contentType;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.contacts.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tombstone of a deleted contact, so that clients syncing through the change feed learn about the
+ * deletion. Pruned by {@code ContactChangeLog} after the retention period.
+ */
+@Entity
+@Table(name = "deleted_contacts")
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class DeletedContact {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(name = "contact_id", nullable = false)
+    private Long contactId;
+
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    @Column(name = "deleted_at", nullable = false)
+    private Instant deletedAt;
+
+    public DeletedContact(Long contactId, long changeSeq, Instant deletedAt) {
+        this.contactId = contactId;
+        this.changeSeq = changeSeq;
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.contacts.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A Kafka record waiting to be published. Rows are written in the transaction that produces the
+ * event and deleted by {@code OutboxRelay} once the broker has acknowledged them.
+ */
+@Entity
+@Table(name = "outbox")
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@ToString(exclude = "payload")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(nullable = false, length = 255)
+    private String topic;
+
+    @Column(name = "message_key", length = 255)
+    private String messageKey;
+
+    /** Class name of the event, sent as the type header that consumers' JSON deserializers expect. */
+    @Column(name = "event_type", nullable = false, length = 255)
+    private String eventType;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    /** Instance publishing the event; it has until {@code claimedUntil} before others may take over. */
+    @Column(name = "claimed_by", length = 64)
+    private String claimedBy;
+
+    @Column(name = "claimed_until")
+    private Instant claimedUntil;
+
+    public OutboxEvent(String topic, String messageKey, String eventType, String payload) {
+        this.topic = topic;
+        this.messageKey = messageKey;
+        this.eventType = eventType;
+        this.payload = payload;
+    }
+
+    @PrePersist
+    void prePersist() {
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.contacts.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Bookkeeping for one blob in the {@code PictureStore}: how many contacts reference it. Rows are
+ * written through {@code PictureBlobRepository}'s atomic counters; a blob whose count has stayed
+ * at zero for the grace period is removed by {@code PictureGarbageCollector}.
+ */
+@Entity
+@Table(name = "picture_blobs")
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class PictureBlob {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    @EqualsAndHashCode.Include
+    private String hash;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(name = "byte_size", nullable = false)
+    private long byteSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    /** Variant widths generated for this blob, e.g. {@code 48,128}; {@code null} before the backfill. */
+    @Column(name = "variants", length = 100)
+    private String variants;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,11 @@
+package com.example.contacts.model;
+
+/** Progress of an asynchronously processed picture upload. */
+public enum PictureStatus {
+    /** No upload is pending; the picture columns describe the current picture, if any. */
+    READY,
+    /** An upload is spooled and waiting for, or going through, processing. */
+    PROCESSING,
+    /** The last upload could not be processed; the previous picture, if any, is kept. */
+    FAILED
+}
@@ -0,0 +1,23 @@
+package com.example.contacts.repository;
+
+import com.example.contacts.model.ChangeSequence;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ChangeSequenceRepository extends JpaRepository<ChangeSequence, String> {
+
+    /** Increments the counter, holding its row lock until the transaction ends. */
+    @Modifying
+    @Query("UPDATE ChangeSequence s SET s.seq = s.seq + 1 WHERE s.name = :name")
+    int increment(@Param("name") String name);
+
+    @Query("SELECT s.seq FROM ChangeSequence s WHERE s.name = :name")
+    Optional<Long> findSeq(@Param("name") String name);
+
+    @Modifying
+    @Query("UPDATE ChangeSequence s SET s.seq = :seq WHERE s.name = :name AND s.seq < :seq")
+    int raise(@Param("name") String name, @Param("seq") long seq);
+}
@@ -0,0 +1,22 @@
+package com.example.contacts.repository;
+
+import com.example.contacts.model.PictureStatus;
+import java.time.Instant;
+
+/** A {@link ContactSummary} together with its position in the change feed. */
+public record ContactChange(
+        Long id,
+        String name,
+        String address,
+        boolean hasPicture,
+        String pictureHash,
+        PictureStatus pictureStatus,
+        String ownerUsername,
+        Instant updatedAt,
+        long changeSeq
+) {
+
+    public ContactSummary summary() {
+        return new ContactSummary(id, name, address, hasPicture, pictureHash, pictureStatus, ownerUsername, updatedAt);
+    }
+}
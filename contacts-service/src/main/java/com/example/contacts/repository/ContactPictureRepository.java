@@ -0,0 +1,26 @@
+package com.example.contacts.repository;
+
+import com.example.contacts.model.ContactPicture;
+import jakarta.persistence.LockModeType;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Legacy picture rows that have not been moved to the {@code PictureStore} yet. New pictures are
+ * never written here; {@code PictureMigrationJob} drains the table.
+ */
+public interface ContactPictureRepository extends JpaRepository<ContactPicture, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM ContactPicture p ORDER BY p.contactId ASC")
+    List<ContactPicture> lockMigrationBatch(Pageable page);
+
+    @Modifying
+    @Query("DELETE FROM ContactPicture p WHERE p.contactId = :contactId")
+    int deleteByContactId(@Param("contactId") Long contactId);
+}
@@ -2,18 +2,99 @@ package com.example.contacts.repository;
 
 import com.example.contacts.model.Contact;
 import com.example.contacts.model.User;
+import jakarta.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-public interface ContactRepository extends JpaRepository<Contact, Long> {
-    List<Contact> findByNameContainingIgnoreCaseOrderByNameAsc(String name);
-    List<Contact> findAllByOrderByNameAsc();
-    List<Contact> findByOwnerOrderByNameAsc(User owner);
+public interface ContactRepository extends JpaRepository<Contact, Long>, ContactStreamingRepository {
     Optional<Contact> findByIdAndOwner(Long id, User owner);
-    
+
+    // Keyset pages ordered by (name, id). InnoDB secondary indexes carry the primary key, so
+    // idx_contacts_name already serves this order and the "name >= :name" bound turns every page
+    // into an index range seek, no matter how deep the client has scrolled.
+
+    @Query("""
+            SELECT new com.example.contacts.repository.ContactSummary(
+                c.id, c.name, c.address, c.hasPicture, c.pictureHash, c.pictureStatus, o.username, c.updatedAt)
+            FROM Contact c JOIN c.owner o
+            ORDER BY c.name ASC, c.id ASC""")
+    List<ContactSummary> findFirstPage(Pageable page);
+
+    @Query("""
+            SELECT new com.example.contacts.repository.ContactSummary(
+                c.id, c.name, c.address, c.hasPicture, c.pictureHash, c.pictureStatus, o.username, c.updatedAt)
+            FROM Contact c JOIN c.owner o
+            WHERE c.name >= :name AND (c.name > :name OR c.id > :id)
+            ORDER BY c.name ASC, c.id ASC""")
+    List<ContactSummary> findPageAfter(@Param("name") String name, @Param("id") Long id, Pageable page);
+
+    @Query("""
+            SELECT new com.example.contacts.repository.ContactSummary(
+                c.id, c.name, c.address, c.hasPicture, c.pictureHash, c.pictureStatus, o.username, c.updatedAt)
+            FROM Contact c JOIN c.owner o
+            WHERE UPPER(c.name) LIKE UPPER(CONCAT('%', :#{escape(#search)}, '%')) ESCAPE :#{escapeCharacter()}
+            ORDER BY c.name ASC, c.id ASC""")
+    List<ContactSummary> searchFirstPage(@Param("search") String search, Pageable page);
+
+    @Query("""
+            SELECT new com.example.contacts.repository.ContactSummary(
+                c.id, c.name, c.address, c.hasPicture, c.pictureHash, c.pictureStatus, o.username, c.updatedAt)
+            FROM Contact c JOIN c.owner o
+            WHERE UPPER(c.name) LIKE UPPER(CONCAT('%', :#{escape(#search)}, '%')) ESCAPE :#{escapeCharacter()}
+              AND c.name >= :name AND (c.name > :name OR c.id > :id)
+            ORDER BY c.name ASC, c.id ASC""")
+    List<ContactSummary> searchPageAfter(@Param("search") String search,
+                                         @Param("name") String name,
+                                         @Param("id") Long id,
+                                         Pageable page);
+
+    /** Type-ahead names until the in-memory index is built; a prefix match can seek idx_contacts_name. */
+    @Query("""
+            SELECT c.name FROM Contact c
+            WHERE c.name LIKE CONCAT(:#{escape(#prefix)}, '%') ESCAPE :#{escapeCharacter()}
+            GROUP BY c.name
+            ORDER BY COUNT(c) DESC, c.name ASC""")
+    List<String> findNamesStartingWith(@Param("prefix") String prefix, Pageable page);
+
+    /** Rows of one page of index search hits; the caller restores the ranked order. */
+    @Query("""
+            SELECT new com.example.contacts.repository.ContactSummary(
+                c.id, c.name, c.address, c.hasPicture, c.pictureHash, c.pictureStatus, o.username, c.updatedAt)
+            FROM Contact c JOIN c.owner o
+            WHERE c.id IN :ids""")
+    List<ContactSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /** Contacts changed in a slice of the change feed, in feed order; served by idx_contacts_change_seq. */
+    @Query("""
+            SELECT new com.example.contacts.repository.ContactChange(
+                c.id, c.name, c.address, c.hasPicture, c.pictureHash, c.pictureStatus, o.username, c.updatedAt, c.changeSeq)
+            FROM Contact c JOIN c.owner o
+            WHERE c.changeSeq > :since AND c.changeSeq <= :until
+            ORDER BY c.changeSeq ASC""")
+    List<ContactChange> findChangedBetween(@Param("since") long since, @Param("until") long until, Pageable page);
+
+    @Modifying
+    @Query("UPDATE Contact c SET c.changeSeq = :seq WHERE c.id = :id")
+    int updateChangeSeq(@Param("id") Long id, @Param("seq") long seq);
+
+    @Query("""
+            SELECT new com.example.contacts.repository.PictureMetadata(c.id, c.pictureHash, c.updatedAt, b.contentType)
+            FROM Contact c LEFT JOIN PictureBlob b ON b.hash = c.pictureHash
+            WHERE c.id = :id AND c.hasPicture = true""")
+    Optional<PictureMetadata> findPictureMetadata(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Contact c SET c.pictureHash = :hash WHERE c.id = :id")
+    int updatePictureHash(@Param("id") Long id, @Param("hash") String hash);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT c FROM Contact c WHERE c.id = :id")
-    Optional<Contact> findByIdWithPicture(@Param("id") Long id);
+    Optional<Contact> lockById(@Param("id") Long id);
 }
@@ -0,0 +1,13 @@
+package com.example.contacts.repository;
+
+import java.util.stream.Stream;
+
+/** Whole-result reads that are streamed from the server instead of being buffered by the driver. */
+public interface ContactStreamingRepository {
+
+    /** Rows of the CSV export for one owner, ordered by name and id. */
+    Stream<ContactSummary> streamExportRows(Long ownerId);
+
+    /** Every contact, the source of the in-memory search index. */
+    Stream<IndexedContact> streamForIndex();
+}
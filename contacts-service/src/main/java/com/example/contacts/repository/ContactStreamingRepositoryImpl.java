@@ -0,0 +1,50 @@
+package com.example.contacts.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Streams with the fetch size set per query. Connector/J only streams a result set when asked to:
+ * {@code Integer.MIN_VALUE} makes it hand rows over one at a time as they arrive, without the
+ * connection-wide {@code useCursorFetch=true} that would turn every other statement of the service
+ * into a server-side prepared statement. The connection can run nothing else until the stream is
+ * closed, which neither caller needs.
+ */
+class ContactStreamingRepositoryImpl implements ContactStreamingRepository {
+
+    private static final String EXPORT_ROWS = """
+            SELECT new com.example.contacts.repository.ContactSummary(
+                c.id, c.name, c.address, c.hasPicture, c.pictureHash, c.pictureStatus, o.username, c.updatedAt)
+            FROM Contact c JOIN c.owner o
+            WHERE o.id = :ownerId
+            ORDER BY c.name ASC, c.id ASC""";
+
+    private static final String INDEX_ROWS = """
+            SELECT new com.example.contacts.repository.IndexedContact(c.id, c.name, c.address, c.version)
+            FROM Contact c""";
+
+    // Databases other than MySQL reject a negative fetch size; the tests run H2 with a plain one.
+    @Value("${app.contacts.streaming-fetch-size:-2147483648}")
+    private int fetchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<ContactSummary> streamExportRows(Long ownerId) {
+        return entityManager.createQuery(EXPORT_ROWS, ContactSummary.class)
+                .setParameter("ownerId", ownerId)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+    @Override
+    public Stream<IndexedContact> streamForIndex() {
+        return entityManager.createQuery(INDEX_ROWS, IndexedContact.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+}
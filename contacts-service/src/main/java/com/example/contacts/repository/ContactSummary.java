@@ -0,0 +1,20 @@
+package com.example.contacts.repository;
+
+import com.example.contacts.model.PictureStatus;
+import java.time.Instant;
+
+/**
+ * Read model for listings, search and export. Selected with a JPQL constructor expression that
+ * joins the owner, so a page of summaries costs exactly one SQL statement.
+ */
+public record ContactSummary(
+        Long id,
+        String name,
+        String address,
+        boolean hasPicture,
+        String pictureHash,
+        PictureStatus pictureStatus,
+        String ownerUsername,
+        Instant updatedAt
+) {
+}
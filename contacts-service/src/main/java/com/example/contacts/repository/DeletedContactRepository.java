@@ -0,0 +1,27 @@
+package com.example.contacts.repository;
+
+import com.example.contacts.model.DeletedContact;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface DeletedContactRepository extends JpaRepository<DeletedContact, Long> {
+
+    @Query("""
+            SELECT d FROM DeletedContact d
+            WHERE d.changeSeq > :since AND d.changeSeq <= :until
+            ORDER BY d.changeSeq ASC""")
+    List<DeletedContact> findDeletedBetween(@Param("since") long since, @Param("until") long until, Pageable page);
+
+    @Query("SELECT MAX(d.changeSeq) FROM DeletedContact d WHERE d.deletedAt < :before")
+    Optional<Long> findLastSeqBefore(@Param("before") Instant before);
+
+    @Modifying
+    @Query("DELETE FROM DeletedContact d WHERE d.changeSeq <= :seq")
+    int deleteUpTo(@Param("seq") long seq);
+}
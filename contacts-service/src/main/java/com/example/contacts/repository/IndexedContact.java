@@ -0,0 +1,8 @@
+package com.example.contacts.repository;
+
+/**
+ * What the in-memory search index keeps of a contact. {@code version} is the optimistic-lock
+ * version, which lets the index tell a scanned row from a newer change it has already applied.
+ */
+public record IndexedContact(Long id, String name, String address, long version) {
+}
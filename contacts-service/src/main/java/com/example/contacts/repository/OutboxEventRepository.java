@@ -0,0 +1,39 @@
+package com.example.contacts.repository;
+
+import com.example.contacts.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * The oldest events that no relay holds a lease on, locked while they are claimed. Rows already
+     * locked by another instance's claim are skipped ({@code FOR UPDATE SKIP LOCKED}).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e WHERE e.claimedUntil IS NULL OR e.claimedUntil < :now ORDER BY e.id ASC")
+    List<OutboxEvent> lockUnclaimed(@Param("now") Instant now, Pageable page);
+
+    /** Per key, the oldest waiting event other than {@code ids}; later events of that key must wait for it. */
+    @Query("""
+            SELECT new com.example.contacts.repository.PendingKey(e.messageKey, MIN(e.id))
+            FROM OutboxEvent e
+            WHERE e.messageKey IN :keys AND e.id NOT IN :ids
+            GROUP BY e.messageKey""")
+    List<PendingKey> findFirstPendingExcept(@Param("keys") Collection<String> keys, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedBy = NULL, e.claimedUntil = NULL WHERE e.id IN :ids AND e.claimedBy = :owner")
+    int release(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+}
@@ -0,0 +1,5 @@
+package com.example.contacts.repository;
+
+/** The oldest outbox row still waiting under a message key. */
+public record PendingKey(String messageKey, Long firstId) {
+}
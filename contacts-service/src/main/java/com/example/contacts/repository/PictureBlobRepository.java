@@ -0,0 +1,68 @@
+package com.example.contacts.repository;
+
+import com.example.contacts.model.PictureBlob;
+import jakarta.persistence.LockModeType;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface PictureBlobRepository extends JpaRepository<PictureBlob, String> {
+
+    // A single upsert so two uploads of the same content never race on "insert if absent": the
+    // second one blocks on the row lock and increments instead.
+    @Modifying
+    @Query(value = """
+            INSERT INTO picture_blobs (hash, content_type, byte_size, ref_count, variants, updated_at)
+            VALUES (:hash, :contentType, :byteSize, 1, :variants, :now)
+            ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, variants = COALESCE(:variants, variants), updated_at = :now""",
+            nativeQuery = true)
+    int acquire(@Param("hash") String hash,
+                @Param("contentType") String contentType,
+                @Param("byteSize") long byteSize,
+                @Param("variants") String variants,
+                @Param("now") Instant now);
+
+    // Records files whose upload rolled back without a reference, so the garbage collector finds
+    // them; a row that exists already (committed by another upload) is left as it is.
+    @Modifying
+    @Query(value = """
+            INSERT INTO picture_blobs (hash, content_type, byte_size, ref_count, variants, updated_at)
+            VALUES (:hash, :contentType, :byteSize, 0, :variants, :now)
+            ON DUPLICATE KEY UPDATE ref_count = ref_count""",
+            nativeQuery = true)
+    int adopt(@Param("hash") String hash,
+              @Param("contentType") String contentType,
+              @Param("byteSize") long byteSize,
+              @Param("variants") String variants,
+              @Param("now") Instant now);
+
+    @Modifying
+    @Query("UPDATE PictureBlob b SET b.refCount = b.refCount - 1, b.updatedAt = :now WHERE b.hash = :hash")
+    int release(@Param("hash") String hash, @Param("now") Instant now);
+
+    @Query("""
+            SELECT b.hash FROM PictureBlob b
+            WHERE b.refCount <= 0 AND b.updatedAt < :cutoff
+            ORDER BY b.updatedAt ASC""")
+    List<String> findOrphans(@Param("cutoff") Instant cutoff, Pageable page);
+
+    @Query("""
+            SELECT b FROM PictureBlob b
+            WHERE b.refCount > 0 AND (b.variants IS NULL OR b.variants <> :spec) AND b.hash > :after
+            ORDER BY b.hash ASC""")
+    List<PictureBlob> findMissingVariants(@Param("spec") String spec, @Param("after") String after, Pageable page);
+
+    @Modifying
+    @Query("UPDATE PictureBlob b SET b.variants = :variants WHERE b.hash = :hash")
+    int markVariants(@Param("hash") String hash, @Param("variants") String variants);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM PictureBlob b WHERE b.hash = :hash")
+    Optional<PictureBlob> lockByHash(@Param("hash") String hash);
+}
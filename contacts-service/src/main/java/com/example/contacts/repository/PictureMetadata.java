@@ -0,0 +1,15 @@
+package com.example.contacts.repository;
+
+import java.time.Instant;
+
+/**
+ * What a conditional picture request needs: validators and the stored blob's content type, read
+ * without touching the picture bytes.
+ */
+public record PictureMetadata(
+        Long contactId,
+        String hash,
+        Instant updatedAt,
+        String contentType
+) {
+}
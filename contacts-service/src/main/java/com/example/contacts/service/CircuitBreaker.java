@@ -0,0 +1,88 @@
+package com.example.contacts.service;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Count-based circuit breaker for calls to weather-service. After {@code failureThreshold}
+ * consecutive failures the circuit opens and calls are rejected without touching the network.
+ * Once {@code openNanos} have passed a single probe call is let through (half-open): its success
+ * closes the circuit, its failure opens it again.
+ */
+@Slf4j
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int failureThreshold, long openNanos, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openNanos;
+        this.clock = clock;
+    }
+
+    /** Returns {@code false} when the call must not be made; every permitted call must report its outcome. */
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        boolean permitted = switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> !probeInFlight;
+        };
+        if (!permitted) {
+            rejectedCalls.increment();
+        } else if (state == State.HALF_OPEN) {
+            probeInFlight = true;
+        }
+        return permitted;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    synchronized void onFailure() {
+        probeInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAt = clock.getAsLong();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /** Gives back a permission whose call was never made, e.g. because the bulkhead was full. */
+    synchronized void releasePermission() {
+        probeInFlight = false;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    long rejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    private void transitionTo(State next) {
+        log.info("Weather-service circuit breaker {} -> {}", state, next);
+        state = next;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.contacts.service;
+
+import com.example.contacts.model.DeletedContact;
+import com.example.contacts.repository.ChangeSequenceRepository;
+import com.example.contacts.repository.ContactChange;
+import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.DeletedContactRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The contacts change feed behind {@code GET /api/contacts/changes}. Every change to a contact
+ * takes the next number of the {@code contacts} sequence and stamps it on the row's
+ * {@code change_seq}; a deletion stamps it on a tombstone in {@code deleted_contacts}. Taking a
+ * number locks the sequence row until the transaction ends, so numbers are committed in order:
+ * once the sequence reads N, every change up to N is visible. Numbers are taken from the
+ * {@link ContactChangedEvent}s of a transaction just before it commits, after its own row changes
+ * are flushed: writers lock contacts before the sequence, never the other way round, and only hold
+ * the sequence for the commit itself rather than for the whole transaction.
+ *
+ * <p>Tombstones are pruned after the retention period. The highest pruned number is kept in the
+ * {@code contacts-pruned} sequence; a client whose token is older gets 410 and reloads its list.
+ */
+@Component
+@Slf4j
+public class ContactChangeLog {
+
+    static final String SEQUENCE = "contacts";
+    static final String PRUNED = "contacts-pruned";
+
+    /** One slice of the feed; {@code token} is where the next request continues. */
+    public record Slice(List<ContactChange> changed, List<Long> deleted, long token, boolean more) {
+    }
+
+    @Value("${app.contacts.changes.max-batch:500}")
+    private int maxBatch;
+    @Value("${app.contacts.changes.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+
+    @Autowired
+    private ChangeSequenceRepository changeSequenceRepository;
+    @Autowired
+    private ContactRepository contactRepository;
+    @Autowired
+    private DeletedContactRepository deletedContactRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onContactChanged(ContactChangedEvent event) {
+        if (event.type() == ContactChangedEvent.Type.DELETED) {
+            recordDeletion(event.contactId());
+        } else {
+            recordChange(event.contactId());
+        }
+    }
+
+    /** Puts a created or edited contact into the feed; call once its own changes are done. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordChange(Long contactId) {
+        contactRepository.flush();
+        contactRepository.updateChangeSeq(contactId, next());
+    }
+
+    /** Leaves a tombstone for a deleted contact; call once the row has been deleted. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeletion(Long contactId) {
+        contactRepository.flush();
+        deletedContactRepository.save(new DeletedContact(contactId, next(), Instant.now()));
+    }
+
+    /** The newest committed position of the feed, the token for a client that has just loaded its list. */
+    @Transactional(readOnly = true)
+    public long current() {
+        return changeSequenceRepository.findSeq(SEQUENCE).orElse(0L);
+    }
+
+    /**
+     * Contacts changed and deleted after {@code since}, oldest first, at most the configured batch
+     * of each. When a batch is cut short, {@code more} is set and the token stops at the last
+     * change returned.
+     */
+    @Transactional(readOnly = true)
+    public Slice changesSince(long since) {
+        if (since < 0) {
+            throw new IllegalArgumentException("since must not be negative");
+        }
+        long until = current();
+        if (since > until) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Unknown change token, reload the contacts");
+        }
+        Pageable batch = PageRequest.of(0, maxBatch + 1);
+        List<ContactChange> changed = contactRepository.findChangedBetween(since, until, batch);
+        List<DeletedContact> deleted = deletedContactRepository.findDeletedBetween(since, until, batch);
+        // Checked after reading: pruning raises this in the transaction that deletes the tombstones.
+        if (changeSequenceRepository.findSeq(PRUNED).orElse(0L) > since) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Change token has expired, reload the contacts");
+        }
+        long token = until;
+        boolean more = false;
+        // Numbers are unique across both lists, so cutting at the lower of the two batch ends
+        // leaves nothing out below the cut.
+        if (changed.size() > maxBatch) {
+            token = changed.get(maxBatch - 1).changeSeq();
+            more = true;
+        }
+        if (deleted.size() > maxBatch) {
+            token = Math.min(token, deleted.get(maxBatch - 1).getChangeSeq());
+            more = true;
+        }
+        long cut = token;
+        return new Slice(
+                changed.stream().filter(change -> change.changeSeq() <= cut).toList(),
+                deleted.stream().filter(tombstone -> tombstone.getChangeSeq() <= cut).map(DeletedContact::getContactId).toList(),
+                token,
+                more);
+    }
+
+    @Scheduled(initialDelayString = "${app.contacts.changes.prune-initial-delay-ms:300000}",
+            fixedDelayString = "${app.contacts.changes.prune-interval-ms:3600000}")
+    public void pruneTombstones() {
+        Instant before = Instant.now().minus(Duration.ofDays(tombstoneRetentionDays));
+        Integer removed = transactionTemplate.execute(status -> deletedContactRepository.findLastSeqBefore(before)
+                .map(seq -> {
+                    changeSequenceRepository.raise(PRUNED, seq);
+                    return deletedContactRepository.deleteUpTo(seq);
+                })
+                .orElse(0));
+        if (removed != null && removed > 0) {
+            log.info("Pruned {} contact tombstones older than {} days", removed, tombstoneRetentionDays);
+        }
+    }
+
+    private long next() {
+        if (changeSequenceRepository.increment(SEQUENCE) != 1) {
+            throw new IllegalStateException("Change sequence '" + SEQUENCE + "' is missing");
+        }
+        return changeSequenceRepository.findSeq(SEQUENCE).orElseThrow();
+    }
+}
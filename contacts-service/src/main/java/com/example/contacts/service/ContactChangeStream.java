@@ -0,0 +1,222 @@
+package com.example.contacts.service;
+
+import com.example.kafka.ContactReplicationEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-sent events behind {@code GET /api/contacts/stream}. A notification only names what
+ * happened to which contact; clients fetch the contact itself through the change feed.
+ *
+ * <p>An idle connection costs an emitter and an empty bounded buffer, nothing more: no thread
+ * waits on it. Notifications are put into every client's buffer and a virtual thread drains a
+ * buffer only while it has something in it. A client whose buffer fills up is too slow to keep
+ * up and is disconnected; it reconnects and catches up from its last token. Heartbeats keep
+ * proxies from closing idle connections and are only sent to clients that got nothing else
+ * during the whole interval.
+ *
+ * <p>Changes made on this node arrive as {@link ContactChangedEvent} once committed. Those of the
+ * other replicas arrive as {@link ContactReplicationEvent}s on the contact changes topic, which
+ * every node reads in a consumer group named after its instance id, without committing offsets;
+ * this node's own changes come back that way too and are dropped by their origin.
+ */
+@Component
+@Slf4j
+public class ContactChangeStream implements MeterBinder {
+
+    static final String EVENT_NAME = "contact";
+
+    /** What a client receives; the type is {@code created}, {@code updated} or {@code deleted}. */
+    public record Notification(String type, Long contactId) {
+    }
+
+    private static final Object HEARTBEAT = new Object();
+
+    // Below Tomcat's default of 8192 connections, so a refused client still gets its 503.
+    @Value("${app.contacts.stream.max-clients:5000}")
+    private int maxClients;
+    @Value("${app.contacts.stream.client-buffer:32}")
+    private int clientBuffer;
+    @Value("${app.contacts.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+    @Value("${app.contacts.stream.heartbeat-ms:20000}")
+    private long heartbeatMs;
+    @Value("${app.contacts.stream.reconnect-ms:3000}")
+    private long reconnectMs;
+    @Value("${app.instance-id:contacts-service}")
+    private String instanceId;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private ExecutorService senders;
+
+    @PostConstruct
+    void init() {
+        senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("contact-stream-", 0).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    /** Opens a stream for a new client; 503 once the node holds {@code app.contacts.stream.max-clients}. */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxClients) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many contact streams, retry later");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        register(emitter);
+        try {
+            emitter.send(SseEmitter.event().reconnectTime(reconnectMs).comment("connected"));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    Subscriber register(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(Math.max(1, clientBuffer)));
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        return subscriber;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onContactChanged(ContactChangedEvent event) {
+        publish(new Notification(event.type().name().toLowerCase(), event.contactId()));
+    }
+
+    @KafkaListener(topics = "${app.kafka.topics.contactChanges}", groupId = "contacts-stream-${app.instance-id:contacts-service}",
+            containerFactory = "contactStreamListenerFactory")
+    public void onReplicaChange(ContactReplicationEvent event) {
+        if (!instanceId.equals(event.getOrigin())) {
+            publish(new Notification(event.getType(), event.getContactId()));
+        }
+    }
+
+    /** Queues a notification for every connected client. */
+    public void publish(Notification notification) {
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, notification);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.contacts.stream.heartbeat-ms:20000}",
+            fixedDelayString = "${app.contacts.stream.heartbeat-ms:20000}")
+    public void heartbeat() {
+        long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(heartbeatMs);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.lastSent - idleSince <= 0 && subscriber.buffer.isEmpty()) {
+                enqueue(subscriber, HEARTBEAT);
+            }
+        }
+    }
+
+    public int clients() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("contacts.stream.clients", this, ContactChangeStream::clients)
+                .description("Clients connected to the contact change stream")
+                .register(registry);
+        FunctionCounter.builder("contacts.stream.sent", sent, LongAdder::sum)
+                .description("Notifications and heartbeats written to stream clients")
+                .register(registry);
+        FunctionCounter.builder("contacts.stream.evicted", evicted, LongAdder::sum)
+                .description("Stream clients disconnected because their buffer was full")
+                .register(registry);
+    }
+
+    private void enqueue(Subscriber subscriber, Object item) {
+        if (!subscriber.buffer.offer(item)) {
+            evict(subscriber);
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            Object item;
+            while ((item = subscriber.buffer.poll()) != null) {
+                try {
+                    if (item == HEARTBEAT) {
+                        subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        subscriber.emitter.send(SseEmitter.event().name(EVENT_NAME).data(item, MediaType.APPLICATION_JSON));
+                    }
+                    subscriber.lastSent = System.nanoTime();
+                    sent.increment();
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away; the emitter reports it through its error callback too.
+                    subscribers.remove(subscriber);
+                    subscriber.buffer.clear();
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+            // An item queued after the last poll but before the flag was cleared found the flag
+            // still set, so this thread has to pick it up.
+        } while (!subscriber.buffer.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private void evict(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            evicted.increment();
+            log.info("Disconnecting a contact stream client that fell {} notifications behind", subscriber.buffer.size());
+            subscriber.emitter.complete();
+        }
+    }
+
+    static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile long lastSent = System.nanoTime();
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<Object> buffer) {
+            this.emitter = emitter;
+            this.buffer = buffer;
+        }
+    }
+}
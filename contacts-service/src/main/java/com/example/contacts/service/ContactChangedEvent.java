@@ -0,0 +1,32 @@
+package com.example.contacts.service;
+
+/**
+ * Published in the transaction that creates, edits or deletes a contact, or changes its picture.
+ * {@code name} and {@code address} are the contact's values after a create or edit, and
+ * {@code null} when they did not change. The change feed numbers the change just before the
+ * transaction commits, and listeners that only care about committed data use
+ * {@code @TransactionalEventListener}, so a mutation only has to publish one.
+ */
+public record ContactChangedEvent(Type type, Long contactId, long version, String name, String address) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static ContactChangedEvent created(Long contactId, long version, String name, String address) {
+        return new ContactChangedEvent(Type.CREATED, contactId, version, name, address);
+    }
+
+    public static ContactChangedEvent updated(Long contactId, long version, String name, String address) {
+        return new ContactChangedEvent(Type.UPDATED, contactId, version, name, address);
+    }
+
+    /** A change to the picture only; it leaves the name, the address and the version alone. */
+    public static ContactChangedEvent pictureChanged(Long contactId) {
+        return new ContactChangedEvent(Type.UPDATED, contactId, 0, null, null);
+    }
+
+    public static ContactChangedEvent deleted(Long contactId, long version) {
+        return new ContactChangedEvent(Type.DELETED, contactId, version, null, null);
+    }
+}
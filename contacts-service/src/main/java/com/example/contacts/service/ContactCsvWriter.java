@@ -0,0 +1,56 @@
+package com.example.contacts.service;
+
+import com.example.contacts.repository.ContactSummary;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Writes the CSV export. Rows are pulled one at a time and written through a fixed-size buffer,
+ * so memory use does not depend on the number of contacts.
+ */
+public final class ContactCsvWriter {
+
+    static final int BUFFER_SIZE = 8 * 1024;
+    static final String HEADER = "name,address,pictureAvailable,updatedAt\n";
+
+    private ContactCsvWriter() {
+    }
+
+    /** Writes the header and every row to {@code out}, then flushes it; returns the number of rows. */
+    public static long write(Iterator<ContactSummary> contacts, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(HEADER);
+        long rows = 0;
+        while (contacts.hasNext()) {
+            ContactSummary contact = contacts.next();
+            writer.write(escape(contact.name()));
+            writer.write(',');
+            writer.write(escape(contact.address()));
+            writer.write(',');
+            writer.write(contact.hasPicture() ? "yes" : "no");
+            writer.write(',');
+            writer.write(String.valueOf(contact.updatedAt()));
+            writer.write('\n');
+            rows++;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    /** Quotes a field that contains a separator, quote or line break, doubling embedded quotes. */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        String escaped = value.replace("\"", "\"\"");
+        if (escaped.contains(",") || escaped.contains("\"") || escaped.contains("\n")) {
+            return "\"" + escaped + "\"";
+        }
+        return escaped;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.contacts.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position in the {@code (name, id)} ordering of the contacts listing, or in the
+ * {@code (rank, name, id)} ordering of an indexed search, where {@code name} is the normalized
+ * name. Clients only ever see the encoded form, so the layout can change without breaking the API.
+ */
+record ContactCursor(int rank, String name, long id) {
+
+    ContactCursor(String name, long id) {
+        this(0, name, id);
+    }
+
+    static ContactCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String position = raw.substring(0, separator);
+            int dot = position.indexOf('.');
+            int rank = dot < 0 ? 0 : Integer.parseInt(position.substring(0, dot));
+            return new ContactCursor(rank, raw.substring(separator + 1), Long.parseLong(position.substring(dot + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    static ContactCursor of(ContactSearchIndex.Hit hit) {
+        return new ContactCursor(hit.rank(), hit.name(), hit.id());
+    }
+
+    ContactSearchIndex.Hit toHit() {
+        return new ContactSearchIndex.Hit(id, rank, name);
+    }
+
+    String encode() {
+        String raw = (rank > 0 ? rank + "." : "") + id + ":" + name;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.contacts.service;
+
+import com.example.contacts.dto.ContactPageResponse;
+import com.example.contacts.dto.ContactResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serialized {@code GET /api/contacts} pages, so that a repeated read costs neither JPA, weather
+ * enrichment nor Jackson. A page is filed under the change feed position
+ * ({@link ContactChangeLog#current()}) and weather epoch it was read at, together with its query;
+ * once either moves on the entry is simply never asked for again and ages out of the byte-bounded
+ * cache. Both come from sources every node shares, so the key gives the same ETag on every node,
+ * which lets a client that already holds the page be answered with 304 before anything is read.
+ * A page still showing pending or unavailable weather is neither cached nor given an ETag: the
+ * next read may well be complete.
+ */
+@Component
+public class ContactListingCache implements MeterBinder {
+
+    /** A listing query at one data version and weather epoch. */
+    public record Key(long version, long weatherEpoch, String search, String cursor, Integer limit) {
+    }
+
+    /** A page as JSON; {@code complete} is false while some of its weather is pending or unavailable. */
+    public record Page(byte[] body, boolean complete) {
+    }
+
+    @Value("${app.contacts.list-cache.enabled:true}")
+    private boolean enabled;
+    @Value("${app.contacts.list-cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    @Autowired
+    private ContactChangeLog contactChangeLog;
+    @Autowired
+    private WeatherClient weatherClient;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Cache<Key, byte[]> pages;
+
+    @PostConstruct
+    void init() {
+        pages = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxBytes))
+                .weigher((Key key, byte[] page) -> page.length)
+                .recordStats()
+                .build();
+    }
+
+    /** The key for a query as of now; take it before reading the page. */
+    public Key key(String search, String cursor, Integer limit) {
+        return new Key(contactChangeLog.current(), weatherClient.weatherEpoch(),
+                search == null || search.isBlank() ? null : search,
+                cursor == null || cursor.isBlank() ? null : cursor,
+                limit);
+    }
+
+    public String etag(Key key) {
+        return "\"" + key.version() + "-" + key.weatherEpoch() + "-"
+                + Integer.toHexString(Objects.hash(key.search(), key.cursor(), key.limit())) + "\"";
+    }
+
+    /** The page for {@code key}, read through {@code listing} if it is not cached. */
+    public Page page(Key key, Supplier<ContactPageResponse> listing) {
+        if (!enabled) {
+            ContactPageResponse page = listing.get();
+            return new Page(serialize(page), isComplete(page));
+        }
+        byte[][] incomplete = new byte[1][];
+        // Returning null from the loader leaves the key uncached.
+        byte[] cached = pages.get(key, ignored -> {
+            ContactPageResponse page = listing.get();
+            byte[] body = serialize(page);
+            if (isComplete(page)) {
+                return body;
+            }
+            incomplete[0] = body;
+            return null;
+        });
+        return cached != null ? new Page(cached, true) : new Page(incomplete[0], false);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, pages, "contacts.listing");
+    }
+
+    private static boolean isComplete(ContactPageResponse page) {
+        return page.getItems().stream()
+                .map(ContactResponse::getWeather)
+                .noneMatch(weather -> weather != null && (weather.isPending() || weather.isUnavailable()));
+    }
+
+    private byte[] serialize(ContactPageResponse page) {
+        try {
+            return objectMapper.writeValueAsBytes(page);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
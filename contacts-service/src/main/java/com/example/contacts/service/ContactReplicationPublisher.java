@@ -0,0 +1,34 @@
+package com.example.contacts.service;
+
+import com.example.kafka.ContactReplicationEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Puts every {@link ContactChangedEvent} into the outbox as a {@link ContactReplicationEvent} on the
+ * contact changes topic, inside the transaction that makes the change, so the other replicas hear
+ * about exactly the changes that commit.
+ */
+@Component
+public class ContactReplicationPublisher {
+
+    @Value("${app.kafka.topics.contactChanges}")
+    private String contactChangesTopic;
+    @Value("${app.instance-id:contacts-service}")
+    private String instanceId;
+
+    @Autowired
+    private EventOutbox eventOutbox;
+
+    @EventListener
+    public void onContactChanging(ContactChangedEvent event) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            eventOutbox.append(contactChangesTopic, String.valueOf(event.contactId()), new ContactReplicationEvent(
+                    event.type().name().toLowerCase(), event.contactId(), event.version(), event.name(), event.address(),
+                    instanceId));
+        }
+    }
+}
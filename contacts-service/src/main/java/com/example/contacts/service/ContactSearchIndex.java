@@ -0,0 +1,588 @@
+package com.example.contacts.service;
+
+import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.IndexedContact;
+import com.example.kafka.ContactReplicationEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * In-memory trigram index over contact names and addresses, so that substring searches do not
+ * scan the {@code contacts} table. Every contact is a document number; each trigram of its
+ * lower-cased, accent-free name and address points to a sorted {@code int[]} posting list of those
+ * numbers. A query of three or more characters intersects the lists of its trigrams and verifies
+ * the few candidates left; shorter queries scan the stored texts. Hits are ranked by where the
+ * query matched (see the {@code RANK_*} constants) and then ordered by name and id.
+ *
+ * <p>The index is filled from a streaming scan once the application is ready. It follows the
+ * {@link ContactChangedEvent}s of this node after they commit and the changes of the other replicas
+ * from the contact changes topic, which it reads from shortly before this node started, so nothing
+ * committed after the scan's snapshot is missed. Every document keeps the contact's version and
+ * anything not newer is ignored, whichever of the scan, the local events or the topic (which also
+ * carries this node's own changes) delivers it first; a deleted contact is not brought back by a
+ * late copy of an earlier change. An edit replaces the document and the old one is only marked
+ * deleted; the index is compacted once deleted documents outnumber live ones. Until the first
+ * build completes, {@link #isReady()} is false and searches go to the database.
+ *
+ * <p>The same updates keep {@link NameSuggestions}, the sorted list of distinct names that
+ * answers {@link #suggest} for the type-ahead.
+ */
+@Component
+@Slf4j
+public class ContactSearchIndex implements MeterBinder, ConsumerSeekAware {
+
+    public static final int RANK_NAME_PREFIX = 4;
+    public static final int RANK_NAME_WORD = 3;
+    public static final int RANK_NAME = 2;
+    public static final int RANK_ADDRESS = 1;
+
+    /** A ranked match; {@code name} is the normalized sort key. */
+    public record Hit(long id, int rank, String name) {
+    }
+
+    public static final Comparator<Hit> ORDER = Comparator.comparingInt(Hit::rank).reversed()
+            .thenComparing(Hit::name)
+            .thenComparingLong(Hit::id);
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final int LOAD_CHUNK = 1000;
+    // Long enough for any scan, redelivery or replay of the changes made before a deletion.
+    private static final Duration REMOVED_RETENTION = Duration.ofMinutes(10);
+
+    @Value("${app.contacts.search-index.enabled:true}")
+    private boolean enabled;
+    @Value("${app.contacts.search-index.replay-ms:60000}")
+    private long replayMs;
+
+    @Autowired
+    private ContactRepository contactRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Everything below is guarded by the lock.
+    private long[] contactIds = new long[1024];
+    private long[] versions = new long[1024];
+    private String[] names = new String[1024];
+    private String[] addresses = new String[1024];
+    private int documents;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private LongIntMap documentByContact = new LongIntMap();
+    private Map<Long, PostingList> postings = new HashMap<>();
+    private final NameSuggestions suggestions = new NameSuggestions();
+    // Recently deleted contacts, so that a scanned row or a late change cannot add them back.
+    private final Cache<Long, Boolean> removed = Caffeine.newBuilder()
+            .expireAfterWrite(REMOVED_RETENTION)
+            .build();
+    private volatile boolean ready;
+
+    private final long startedAt = System.currentTimeMillis();
+    private final Set<TopicPartition> replayed = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            Thread.ofPlatform().name("contact-search-index").daemon().start(this::buildFromDatabase);
+        }
+    }
+
+    private void buildFromDatabase() {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<IndexedContact> rows = contactRepository.streamForIndex()) {
+                    load(rows.iterator());
+                }
+            });
+            log.info("Contact search index built with {} contacts in {} ms",
+                    size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Contact search index could not be built, searches use the database: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds every row to the index and marks it ready. Rows are taken in chunks, so concurrent
+     * changes are not held up for the whole scan; a change applied before its row was read is
+     * newer than the row and stays.
+     */
+    public void load(Iterator<IndexedContact> rows) {
+        while (rows.hasNext()) {
+            List<IndexedContact> chunk = new ArrayList<>(LOAD_CHUNK);
+            while (rows.hasNext() && chunk.size() < LOAD_CHUNK) {
+                chunk.add(rows.next());
+            }
+            lock.writeLock().lock();
+            try {
+                for (IndexedContact row : chunk) {
+                    change(row.id(), row.name(), row.address(), row.version());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            suggestions.merge();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onContactChanged(ContactChangedEvent event) {
+        if (event.type() == ContactChangedEvent.Type.DELETED) {
+            remove(event.contactId());
+        } else if (event.name() != null) {
+            index(event.contactId(), event.name(), event.address(), event.version());
+        }
+    }
+
+    @KafkaListener(topics = "${app.kafka.topics.contactChanges}", groupId = "contacts-index-${app.instance-id:contacts-service}")
+    public void onReplicaChange(ContactReplicationEvent event) {
+        if ("deleted".equals(event.getType())) {
+            remove(event.getContactId());
+        } else if (event.getName() != null) {
+            index(event.getContactId(), event.getName(), event.getAddress(), event.getVersion());
+        }
+    }
+
+    /**
+     * Starts every partition a little before this node did, the first time it is assigned, so the
+     * changes other replicas committed while the scan ran are replayed; older ones are ignored.
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        Collection<TopicPartition> first = assignments.keySet().stream().filter(replayed::add).toList();
+        if (!first.isEmpty()) {
+            callback.seekToTimestamp(first, startedAt - replayMs);
+        }
+    }
+
+    /** Indexes a created or edited contact, unless the index already holds this version or a newer one. */
+    public void index(Long contactId, String name, String address, long version) {
+        lock.writeLock().lock();
+        try {
+            change(contactId, name, address, version);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Drops a deleted contact and keeps it from being added back by an older change. */
+    public void remove(Long contactId) {
+        lock.writeLock().lock();
+        try {
+            removed.put(contactId, Boolean.TRUE);
+            delete(contactId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} hits for {@code query} that come after {@code after} in
+     * {@link #ORDER}, or from the start when it is {@code null}.
+     */
+    public List<Hit> search(String query, Hit after, int limit) {
+        String needle = normalize(query.trim());
+        if (needle.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, ORDER.reversed());
+        lock.readLock().lock();
+        try {
+            if (needle.length() >= 3) {
+                for (int document : candidates(needle)) {
+                    collect(document, needle, after, limit, best);
+                }
+            } else {
+                for (int document = 0; document < documents; document++) {
+                    collect(document, needle, after, limit, best);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(ORDER);
+        return hits;
+    }
+
+    /** Up to {@code limit} distinct contact names starting with {@code prefix}, the most common first. */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix.stripLeading());
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return suggestions.suggest(key, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("contacts.search.index.documents", this, ContactSearchIndex::size)
+                .description("Contacts in the in-memory search index")
+                .register(registry);
+        Gauge.builder("contacts.search.index.trigrams", this, ContactSearchIndex::trigrams)
+                .description("Distinct trigrams in the in-memory search index")
+                .register(registry);
+        Gauge.builder("contacts.suggest.names", this, index -> index.readSuggestions(NameSuggestions::size))
+                .description("Distinct names available to the type-ahead")
+                .register(registry);
+        Gauge.builder("contacts.suggest.memory", this, index -> index.readSuggestions(NameSuggestions::memoryBytes))
+                .description("Heap held by the sorted type-ahead names")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("contacts.suggest.memory.per.million.names", this, ContactSearchIndex::suggestionBytesPerMillion)
+                .description("Heap held by the sorted type-ahead names, scaled to one million names")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) > 0x7F) {
+                return DIACRITICS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return lower;
+    }
+
+    /** Called with the write lock held. */
+    private void change(long contactId, String name, String address, long version) {
+        int document = documentByContact.get(contactId);
+        if ((document >= 0 && versions[document] >= version) || removed.getIfPresent(contactId) != null) {
+            return;
+        }
+        put(contactId, name, address, version);
+    }
+
+    private void put(long contactId, String name, String address, long version) {
+        delete(contactId);
+        if (documents == contactIds.length) {
+            int capacity = documents * 2;
+            contactIds = Arrays.copyOf(contactIds, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            names = Arrays.copyOf(names, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+        }
+        int document = documents++;
+        contactIds[document] = contactId;
+        versions[document] = version;
+        names[document] = normalize(name);
+        addresses[document] = address != null ? normalize(address) : "";
+        documentByContact.put(contactId, document);
+        suggestions.add(names[document].strip(), name.strip());
+        addTrigrams(names[document], document);
+        addTrigrams(addresses[document], document);
+    }
+
+    private void delete(long contactId) {
+        int document = documentByContact.get(contactId);
+        if (document < 0) {
+            return;
+        }
+        documentByContact.put(contactId, -1);
+        deleted.set(document);
+        suggestions.remove(names[document].strip());
+        names[document] = null;
+        addresses[document] = null;
+        if (++deletedCount > Math.max(1024, documents - deletedCount)) {
+            compact();
+        }
+    }
+
+    /** Renumbers the live documents and rebuilds the posting lists without the deleted ones. */
+    private void compact() {
+        long[] oldIds = contactIds;
+        long[] oldVersions = versions;
+        String[] oldNames = names;
+        String[] oldAddresses = addresses;
+        int oldDocuments = documents;
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, oldDocuments - deletedCount)) * 2);
+        contactIds = new long[capacity];
+        versions = new long[capacity];
+        names = new String[capacity];
+        addresses = new String[capacity];
+        documents = 0;
+        deleted.clear();
+        deletedCount = 0;
+        documentByContact = new LongIntMap();
+        postings = new HashMap<>();
+        for (int document = 0; document < oldDocuments; document++) {
+            if (oldNames[document] != null) {
+                int renumbered = documents++;
+                contactIds[renumbered] = oldIds[document];
+                versions[renumbered] = oldVersions[document];
+                names[renumbered] = oldNames[document];
+                addresses[renumbered] = oldAddresses[document];
+                documentByContact.put(oldIds[document], renumbered);
+                addTrigrams(names[renumbered], renumbered);
+                addTrigrams(addresses[renumbered], renumbered);
+            }
+        }
+    }
+
+    private void addTrigrams(String text, int document) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            postings.computeIfAbsent(trigram(text, i), key -> new PostingList()).add(document);
+        }
+    }
+
+    private double readSuggestions(ToDoubleFunction<NameSuggestions> metric) {
+        lock.readLock().lock();
+        try {
+            return metric.applyAsDouble(suggestions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double suggestionBytesPerMillion() {
+        lock.readLock().lock();
+        try {
+            int names = suggestions.size();
+            return names == 0 ? 0 : suggestions.memoryBytes() * 1_000_000.0 / names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int trigrams() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long trigram(String text, int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    /** Documents whose posting lists contain every trigram of {@code needle}, in ascending order. */
+    private int[] candidates(String needle) {
+        Map<Long, PostingList> lists = new HashMap<>();
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            long key = trigram(needle, i);
+            PostingList list = postings.get(key);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.put(key, list);
+        }
+        PostingList[] sorted = lists.values().toArray(PostingList[]::new);
+        Arrays.sort(sorted, Comparator.comparingInt(list -> list.size));
+        PostingList smallest = sorted[0];
+        int[] positions = new int[sorted.length];
+        int[] matches = new int[smallest.size];
+        int count = 0;
+        outer:
+        for (int i = 0; i < smallest.size; i++) {
+            int document = smallest.documents[i];
+            for (int j = 1; j < sorted.length; j++) {
+                positions[j] = sorted[j].seek(positions[j], document);
+                if (positions[j] == sorted[j].size) {
+                    break outer;
+                }
+                if (sorted[j].documents[positions[j]] != document) {
+                    continue outer;
+                }
+            }
+            matches[count++] = document;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private void collect(int document, String needle, Hit after, int limit, PriorityQueue<Hit> best) {
+        if (deleted.get(document)) {
+            return;
+        }
+        int rank = rank(names[document], addresses[document], needle);
+        if (rank == 0) {
+            return;
+        }
+        long id = contactIds[document];
+        String name = names[document];
+        if (after != null && compare(rank, name, id, after) <= 0) {
+            return;
+        }
+        // Most candidates of a common query do not make the page; reject them before allocating.
+        if (best.size() == limit) {
+            if (compare(rank, name, id, best.peek()) >= 0) {
+                return;
+            }
+            best.poll();
+        }
+        best.add(new Hit(id, rank, name));
+    }
+
+    /** {@link #ORDER} without building a {@link Hit} for the left-hand side. */
+    private static int compare(int rank, String name, long id, Hit other) {
+        if (rank != other.rank()) {
+            return Integer.compare(other.rank(), rank);
+        }
+        int byName = name.compareTo(other.name());
+        return byName != 0 ? byName : Long.compare(id, other.id());
+    }
+
+    private static int rank(String name, String address, String needle) {
+        int at = name.indexOf(needle);
+        if (at == 0) {
+            return RANK_NAME_PREFIX;
+        }
+        if (at > 0) {
+            for (int i = at; i >= 0; i = name.indexOf(needle, i + 1)) {
+                if (!Character.isLetterOrDigit(name.charAt(i - 1))) {
+                    return RANK_NAME_WORD;
+                }
+            }
+            return RANK_NAME;
+        }
+        return address.contains(needle) ? RANK_ADDRESS : 0;
+    }
+
+    /** Ascending document numbers; documents are only ever appended, so adding keeps the order. */
+    private static final class PostingList {
+        private int[] documents = new int[4];
+        private int size;
+
+        void add(int document) {
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size + (size >> 1));
+            }
+            documents[size++] = document;
+        }
+
+        /** Index of the first entry at or after {@code from} that is not below {@code document}. */
+        int seek(int from, int document) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && documents[high] < document) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(documents, low, Math.min(high + 1, size), document);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /** Open-addressing map from contact id to document number; absent keys map to -1. */
+    private static final class LongIntMap {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private long[] keys = newKeys(1 << 10);
+        private int[] values = new int[1 << 10];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -1,34 +1,55 @@
 package com.example.contacts.service;
 
+import com.example.contacts.dto.ContactChangesResponse;
+import com.example.contacts.dto.ContactPageResponse;
 import com.example.contacts.dto.ContactRequest;
 import com.example.contacts.dto.ContactResponse;
+import com.example.contacts.dto.PictureStatusResponse;
 import com.example.contacts.dto.WeatherInfo;
 import com.example.kafka.EditContactEvent;
 import com.example.contacts.model.Contact;
+import com.example.contacts.model.ContactPicture;
+import com.example.contacts.model.PictureStatus;
 import com.example.contacts.model.User;
+import com.example.contacts.repository.ContactChange;
+import com.example.contacts.repository.ContactPictureRepository;
 import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.ContactSummary;
+import com.example.contacts.repository.PictureBlobRepository;
+import com.example.contacts.repository.PictureMetadata;
 import com.example.contacts.repository.UserRepository;
+import com.example.contacts.storage.PictureStore;
 import jakarta.persistence.EntityNotFoundException;
-import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.RenderingHints;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CompletableFuture;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import javax.imageio.ImageIO;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -36,42 +57,160 @@ import org.springframework.web.server.ResponseStatusException;
 @Slf4j
 public class ContactService {
 
-    private static final int MAX_IMAGE_WIDTH = 500;
-    private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of("image/png", "image/jpeg", "image/jpg");
-    private static final Map<String, String> FORMAT_BY_CONTENT_TYPE = Map.ofEntries(
-            Map.entry("image/png", "png"),
-            Map.entry("image/jpeg", "jpg"),
-            Map.entry("image/jpg", "jpg")
-    );
+    private static final int PICTURE_URL_VERSION_LENGTH = 16;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_SUGGESTIONS = 50;
+    // Spooled uploads are named <contact id>-<picture version>.<format>.
+    private static final Pattern SPOOLED_PICTURE = Pattern.compile("(\\d+)-(\\d+)\\.(png|jpg)");
 
     @Value("${app.kafka.topics.editContact}")
     private String editContactTopic;
+    @Value("${app.contacts.page-size:50}")
+    private int defaultPageSize;
+    @Value("${app.contacts.max-page-size:200}")
+    private int maxPageSize;
+    @Value("${app.pictures.async.enabled:false}")
+    private boolean asyncPictures;
 
     @Autowired
-    private KafkaTemplate<String, EditContactEvent> kafkaTemplate;
+    private EventOutbox eventOutbox;
+    @Autowired
+    private ContactSearchIndex contactSearchIndex;
+    @Autowired
+    private ContactChangeLog contactChangeLog;
     @Autowired
     private ContactRepository contactRepository;
     @Autowired
+    private ContactPictureRepository contactPictureRepository;
+    @Autowired
+    private PictureBlobRepository pictureBlobRepository;
+    @Autowired
+    private PictureStore pictureStore;
+    @Autowired
+    private PictureProcessor pictureProcessor;
+    @Autowired
+    private PictureWorkQueue pictureWorkQueue;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
     private UserRepository userRepository;
     @Autowired
     private WeatherClient weatherClient;
 
     @Transactional(readOnly = true)
-    public List<ContactResponse> listContacts(String search) {
+    public ContactPageResponse listContacts(String search, String cursor, Integer limit) {
         if (search == null || search.isBlank()) {
-            log.info("Listing all contacts");
+            log.info("Listing contacts page (cursor={})", cursor);
         } else {
-            log.info("Listing contacts with search='{}'", search);
+            log.info("Listing contacts page with search='{}' (cursor={})", search, cursor);
+        }
+        int pageSize = resolvePageSize(limit);
+        // One extra row tells us whether a following page exists without a COUNT query.
+        Pageable page = PageRequest.of(0, pageSize + 1);
+        ContactCursor after = (cursor == null || cursor.isBlank()) ? null : ContactCursor.decode(cursor);
+        boolean searching = search != null && !search.isBlank();
+        // A search keeps to the order its first page came in: ranked cursors come from the index,
+        // unranked ones from the database query, even if the index has been built since.
+        boolean indexed = searching && (after == null ? contactSearchIndex.isReady() : after.rank() > 0);
+        if (indexed && !contactSearchIndex.isReady()) {
+            throw new IllegalArgumentException("Cursor belongs to an indexed search that is no longer available, start the search again");
         }
-        List<Contact> contacts;
-        if (search != null && !search.isBlank()) {
-            contacts = contactRepository.findByNameContainingIgnoreCaseOrderByNameAsc(search.trim());
+        List<ContactSummary> contacts;
+        String next = null;
+        if (indexed) {
+            // Ranked and paginated in memory; only the rows of this page are read from the database.
+            List<ContactSearchIndex.Hit> hits = contactSearchIndex.search(
+                    search, after == null ? null : after.toHit(), pageSize + 1);
+            if (hits.size() > pageSize) {
+                hits = hits.subList(0, pageSize);
+                next = ContactCursor.of(hits.get(pageSize - 1)).encode();
+            }
+            contacts = loadInOrder(hits);
         } else {
-            contacts = contactRepository.findAllByOrderByNameAsc();
+            if (searching) {
+                contacts = after == null
+                        ? contactRepository.searchFirstPage(search.trim(), page)
+                        : contactRepository.searchPageAfter(search.trim(), after.name(), after.id(), page);
+            } else {
+                contacts = after == null
+                        ? contactRepository.findFirstPage(page)
+                        : contactRepository.findPageAfter(after.name(), after.id(), page);
+            }
+            if (contacts.size() > pageSize) {
+                contacts = contacts.subList(0, pageSize);
+                ContactSummary last = contacts.get(pageSize - 1);
+                next = new ContactCursor(last.name(), last.id()).encode();
+            }
         }
-        return contacts.stream()
-                .map(this::toResponse)
+        Map<String, WeatherInfo> weather = weatherClient.fetchWeatherBatch(
+                contacts.stream().map(ContactSummary::address).toList());
+        List<ContactResponse> items = contacts.stream()
+                .map(contact -> toResponse(contact, weather.get(contact.address())))
                 .collect(Collectors.toList());
+        return new ContactPageResponse(items, next);
+    }
+
+    /**
+     * Delta sync: contacts created or edited and ids of contacts deleted after the {@code since}
+     * token, with the token to continue from. Without a token only the current one is returned,
+     * for a client that is about to load its list.
+     */
+    @Transactional(readOnly = true)
+    public ContactChangesResponse changesSince(Long since) {
+        if (since == null) {
+            return new ContactChangesResponse(List.of(), List.of(), contactChangeLog.current(), false);
+        }
+        ContactChangeLog.Slice slice = contactChangeLog.changesSince(since);
+        List<ContactSummary> contacts = slice.changed().stream().map(ContactChange::summary).toList();
+        Map<String, WeatherInfo> weather = weatherClient.fetchWeatherBatch(
+                contacts.stream().map(ContactSummary::address).toList());
+        List<ContactResponse> changed = contacts.stream()
+                .map(contact -> toResponse(contact, weather.get(contact.address())))
+                .toList();
+        log.info("Returning {} changed and {} deleted contacts since {}", changed.size(), slice.deleted().size(), since);
+        return new ContactChangesResponse(changed, slice.deleted(), slice.token(), slice.more());
+    }
+
+    /**
+     * Type-ahead: up to {@code limit} distinct contact names starting with {@code prefix}, the
+     * most common first. Served from the search index without touching the database, or opening a
+     * transaction, once it is built.
+     */
+    public List<String> suggestNames(String prefix, Integer limit) {
+        int size = limit == null ? DEFAULT_SUGGESTIONS : limit;
+        if (size < 1 || size > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        if (contactSearchIndex.isReady()) {
+            return contactSearchIndex.suggest(prefix, size);
+        }
+        return contactRepository.findNamesStartingWith(prefix.stripLeading(), PageRequest.of(0, size));
+    }
+
+    private List<ContactSummary> loadInOrder(List<ContactSearchIndex.Hit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ContactSummary> rows = contactRepository.findSummariesByIdIn(
+                        hits.stream().map(ContactSearchIndex.Hit::id).toList()).stream()
+                .collect(Collectors.toMap(ContactSummary::id, Function.identity()));
+        // A contact deleted since the index answered simply drops out of the page.
+        return hits.stream().map(hit -> rows.get(hit.id())).filter(Objects::nonNull).toList();
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
     }
 
     @Transactional
@@ -80,8 +219,16 @@ public class ContactService {
         User owner = userRepository.findByUsername(username)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
         Contact contact = new Contact(request.getName(), request.getAddress(), owner);
-        applyPicture(contact, request.getPicture());
-        Contact saved = contactRepository.save(contact);
+        Contact saved;
+        if (processesInBackground(request.getPicture())) {
+            saved = schedulePicture(contact, request.getPicture());
+        } else {
+            PicturePayload picture = pictureProcessor.process(request.getPicture());
+            applyPictureMetadata(contact, picture);
+            saved = contactRepository.save(contact);
+            storePicture(saved, picture, false, null);
+        }
+        eventPublisher.publishEvent(ContactChangedEvent.created(saved.getId(), saved.getVersion(), saved.getName(), saved.getAddress()));
         log.info("Contact id={} created for user '{}'", saved.getId(), username);
         return toResponse(saved);
     }
@@ -93,17 +240,25 @@ public class ContactService {
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
         Contact contact = contactRepository.findByIdAndOwner(id, owner)
                 .orElseThrow(() -> new EntityNotFoundException("Contact not found"));
+        String previousAddress = contact.getAddress();
         contact.setName(request.getName());
         contact.setAddress(request.getAddress());
-        applyPicture(contact, request.getPicture());
-        Contact updated = contactRepository.save(contact);
+        Contact updated;
+        if (processesInBackground(request.getPicture())) {
+            updated = schedulePicture(contact, request.getPicture());
+        } else {
+            PicturePayload picture = pictureProcessor.process(request.getPicture());
+            String previousHash = contact.getPictureHash();
+            boolean hadPicture = applyPictureMetadata(contact, picture);
+            updated = contactRepository.save(contact);
+            storePicture(updated, picture, hadPicture, previousHash);
+        }
+        // Flushing assigns the new version (or fails on a concurrent edit) before it goes into the event.
+        contactRepository.flush();
+        eventPublisher.publishEvent(ContactChangedEvent.updated(updated.getId(), updated.getVersion(), updated.getName(), updated.getAddress()));
         log.info("Contact id={} updated for user '{}'", id, username);
-        CompletableFuture<SendResult<String, EditContactEvent>> kafkaResult
-            = kafkaTemplate.send(editContactTopic, new EditContactEvent(contact.getName()));
-        kafkaResult.thenApplyAsync(c -> {
-            log.info("Kafka producer result: " + c.toString());
-            return c;
-        });
+        eventOutbox.append(editContactTopic, String.valueOf(updated.getId()), new EditContactEvent(
+                updated.getId(), username, updated.getName(), previousAddress, updated.getAddress(), updated.getVersion()));
         return toResponse(updated);
     }
 
@@ -114,140 +269,339 @@ public class ContactService {
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
         Contact contact = contactRepository.findByIdAndOwner(id, owner)
                 .orElseThrow(() -> new EntityNotFoundException("Contact not found"));
+        if (contact.isHasPicture()) {
+            releasePicture(contact.getId(), contact.getPictureHash());
+        }
         contactRepository.delete(contact);
+        eventPublisher.publishEvent(ContactChangedEvent.deleted(id, contact.getVersion()));
         log.info("Contact id={} deleted", id);
     }
 
     @Transactional(readOnly = true)
-    public String exportCsv(String username) {
+    public long exportCsv(String username, OutputStream out) throws IOException {
         User owner = userRepository.findByUsername(username)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        log.info("Generating CSV export for user '{}'", username);
-        List<Contact> contacts = contactRepository.findByOwnerOrderByNameAsc(owner);
-        StringBuilder builder = new StringBuilder();
-        builder.append("name,address,pictureAvailable,updatedAt\n");
-        for (Contact contact : contacts) {
-            builder.append(escape(contact.getName())).append(',')
-                    .append(escape(contact.getAddress())).append(',')
-                    .append(contact.getPictureData() != null && contact.getPictureData().length > 0 ? "yes" : "no").append(',')
-                    .append(contact.getUpdatedAt()).append('\n');
+        log.info("Streaming CSV export for user '{}'", username);
+        // Rows come from a database cursor as DTO projections, so neither the persistence context
+        // nor the writer's fixed-size buffer grows with the number of contacts.
+        long rows;
+        try (Stream<ContactSummary> contacts = contactRepository.streamExportRows(owner.getId())) {
+            rows = ContactCsvWriter.write(contacts.iterator(), out);
         }
-        log.info("CSV export generated with {} contacts", contacts.size());
-        return builder.toString();
+        log.info("CSV export streamed {} contacts", rows);
+        return rows;
     }
 
-    private String escape(String value) {
-        if (value == null) {
-            return "";
-        }
-        String escaped = value.replace("\"", "\"\"");
-        if (escaped.contains(",") || escaped.contains("\"") || escaped.contains("\n")) {
-            return "\"" + escaped + "\"";
-        }
-        return escaped;
+    private ContactResponse toResponse(Contact contact) {
+        return toResponse(toSummary(contact), weatherClient.fetchWeather(contact.getAddress()));
     }
 
-    private ContactResponse toResponse(Contact contact) {
-        WeatherInfo weather = weatherClient.fetchWeather(contact.getAddress());
+    private static ContactSummary toSummary(Contact contact) {
+        return new ContactSummary(contact.getId(), contact.getName(), contact.getAddress(),
+                contact.isHasPicture(), contact.getPictureHash(), contact.getPictureStatus(),
+                contact.getOwner().getUsername(), contact.getUpdatedAt());
+    }
+
+    private ContactResponse toResponse(ContactSummary contact, WeatherInfo weather) {
         return new ContactResponse(
-                contact.getId(),
-                contact.getName(),
-                contact.getAddress(),
-                contact.getPictureData() != null && contact.getPictureData().length > 0,
-                contact.getOwner().getUsername(),
-                contact.getUpdatedAt(),
+                contact.id(),
+                contact.name(),
+                contact.address(),
+                contact.hasPicture(),
+                pictureUrl(contact, null),
+                pictureSrcset(contact),
+                contact.pictureStatus(),
+                contact.ownerUsername(),
+                contact.updatedAt(),
                 weather
         );
     }
 
-    private void applyPicture(Contact contact, MultipartFile picture) {
-        PicturePayload payload = processPicture(picture);
-        if (payload != null) {
-            log.info("Applying picture ({} bytes, {}) to contact id={}",
-                    payload.data().length, payload.contentType(), contact.getId());
-            contact.setPictureData(payload.data());
-            contact.setPictureContentType(payload.contentType());
+    private static String pictureUrl(ContactSummary contact, Integer size) {
+        if (!contact.hasPicture()) {
+            return null;
+        }
+        String url = "/api/contacts/" + contact.id() + "/picture";
+        if (contact.pictureHash() == null) {
+            return size != null ? url + "?size=" + size : url;
         }
+        url += "?v=" + pictureVersion(contact.pictureHash());
+        return size != null ? url + "&size=" + size : url;
     }
 
-    private PicturePayload processPicture(MultipartFile picture) {
-        if (picture == null || picture.isEmpty()) {
-            log.info("No picture provided for processing");
+    /** An {@code <img srcset>} value listing every variant and the full picture by width. */
+    private String pictureSrcset(ContactSummary contact) {
+        if (!contact.hasPicture() || pictureProcessor.variantWidths().isEmpty()) {
             return null;
         }
-        String contentType = picture.getContentType();
-        if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType.toLowerCase())) {
-            log.warn("Rejected picture with unsupported content type '{}'", contentType);
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PNG and JPG images are supported.");
+        StringBuilder srcset = new StringBuilder();
+        for (int width : pictureProcessor.variantWidths()) {
+            srcset.append(pictureUrl(contact, width)).append(' ').append(width).append("w, ");
+        }
+        return srcset.append(pictureUrl(contact, null)).append(' ').append(PictureProcessor.MAX_IMAGE_WIDTH).append('w').toString();
+    }
+
+    /**
+     * Copies the denormalized picture metadata onto the contact row.
+     *
+     * @return whether the contact already had a picture row before this change
+     */
+    private boolean applyPictureMetadata(Contact contact, PicturePayload payload) {
+        boolean hadPicture = contact.isHasPicture();
+        if (payload != null) {
+            contact.setPictureVersion(contact.getPictureVersion() + 1);
+            copyPictureMetadata(contact, payload);
         }
-        String formatName = FORMAT_BY_CONTENT_TYPE.get(contentType.toLowerCase());
+        return hadPicture;
+    }
+
+    private static void copyPictureMetadata(Contact contact, PicturePayload payload) {
+        log.info("Applying picture ({} bytes, {}) to contact id={}",
+                payload.data().length, payload.contentType(), contact.getId());
+        contact.setHasPicture(true);
+        contact.setPictureSize(payload.data().length);
+        contact.setPictureHash(PictureProcessor.sha256(payload.data()));
+    }
+
+    private boolean processesInBackground(MultipartFile picture) {
+        return asyncPictures && picture != null && !picture.isEmpty();
+    }
+
+    /**
+     * Saves the contact as {@code PROCESSING} and spools the upload; it is handed to the worker
+     * pool once this transaction commits. The picture version is bumped now and identifies the
+     * upload, so a job that has been overtaken by a newer upload is recognised and dropped.
+     */
+    private Contact schedulePicture(Contact contact, MultipartFile upload) {
+        String formatName = pictureProcessor.formatName(upload.getContentType());
+        if (!pictureWorkQueue.tryReserve()) {
+            log.warn("Picture processing queue is full, rejecting upload for contact '{}'", contact.getName());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Picture processing is busy, please retry shortly.");
+        }
+        Contact saved;
+        Path spooled;
         try {
-            BufferedImage original = ImageIO.read(picture.getInputStream());
-            if (original == null) {
-                log.warn("Uploaded file could not be read as an image");
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unable to process uploaded image.");
-            }
-            BufferedImage processed = resizeIfNecessary(original, formatName);
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                ImageIO.write(processed, formatName, baos);
-                return new PicturePayload(baos.toByteArray(), contentType);
+            contact.setPictureVersion(contact.getPictureVersion() + 1);
+            contact.setPictureStatus(PictureStatus.PROCESSING);
+            saved = contactRepository.save(contact);
+            spooled = pictureWorkQueue.spool(upload, saved.getId() + "-" + saved.getPictureVersion() + "." + formatName);
+        } catch (RuntimeException e) {
+            pictureWorkQueue.cancel(null);
+            throw e;
+        }
+        Long contactId = saved.getId();
+        int version = saved.getPictureVersion();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    pictureWorkQueue.submit(() -> processSpooled(contactId, version, spooled, formatName));
+                } else {
+                    pictureWorkQueue.cancel(spooled);
+                }
             }
-        } catch (IOException e) {
-            log.error("Failed to read uploaded image: {}", e.getMessage());
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read uploaded image.");
+        });
+        log.info("Picture for contact id={} spooled for background processing", contactId);
+        return saved;
+    }
+
+    /**
+     * Re-queues uploads that were spooled but never finished, e.g. because of a restart. They are
+     * handed over on a thread of their own, which waits for free slots as the workers drain, so
+     * neither startup nor the other ready listeners wait behind a long spool.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeSpooledPictures() {
+        List<Path> spooled = pictureWorkQueue.spooled();
+        if (!spooled.isEmpty()) {
+            Thread.ofPlatform().name("picture-resume").daemon().start(() -> resume(spooled));
         }
     }
 
-    private BufferedImage resizeIfNecessary(BufferedImage source, String formatName) {
-        if (source.getWidth() <= MAX_IMAGE_WIDTH) {
-            return ensureCompatibleImage(source, formatName);
+    private void resume(List<Path> uploads) {
+        for (Path spooled : uploads) {
+            Matcher name = SPOOLED_PICTURE.matcher(spooled.getFileName().toString());
+            if (!name.matches()) {
+                pictureWorkQueue.discard(spooled);
+                continue;
+            }
+            log.info("Resuming spooled picture {}", spooled.getFileName());
+            pictureWorkQueue.reserve();
+            pictureWorkQueue.submit(() -> processSpooled(Long.valueOf(name.group(1)), Integer.parseInt(name.group(2)),
+                    spooled, name.group(3)));
         }
-        int newWidth = MAX_IMAGE_WIDTH;
-        int newHeight = (int) Math.round(((double) newWidth / source.getWidth()) * source.getHeight());
-        int imageType = "png".equals(formatName) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
-        BufferedImage resized = new BufferedImage(newWidth, newHeight, imageType);
-        Graphics2D graphics = resized.createGraphics();
+    }
+
+    private void processSpooled(Long contactId, int version, Path spooled, String formatName) {
+        PictureStatus status;
         try {
-            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            Image scaled = source.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-            graphics.drawImage(scaled, 0, 0, null);
+            PicturePayload payload = pictureProcessor.process(spooled, formatName);
+            status = transactionTemplate.execute(tx -> completePicture(contactId, version, payload));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Background processing of the picture for contact id={} failed: {}", contactId, e.getMessage());
+            status = transactionTemplate.execute(tx -> failPicture(contactId, version));
         } finally {
-            graphics.dispose();
+            pictureWorkQueue.discard(spooled);
+        }
+        if (status != null) {
+            eventPublisher.publishEvent(new PictureProcessedEvent(contactId, status));
         }
-        return resized;
     }
 
-    private BufferedImage ensureCompatibleImage(BufferedImage source, String formatName) {
-        boolean needsConversion = ("png".equals(formatName) && source.getType() != BufferedImage.TYPE_INT_ARGB)
-                || ("jpg".equals(formatName) && source.getType() != BufferedImage.TYPE_INT_RGB);
-        if (!needsConversion) {
-            return source;
+    private PictureStatus completePicture(Long contactId, int version, PicturePayload payload) {
+        Contact contact = lockPendingPicture(contactId, version);
+        if (contact == null) {
+            return null;
         }
-        int imageType = "png".equals(formatName) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
-        BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), imageType);
-        Graphics2D graphics = converted.createGraphics();
-        try {
-            graphics.drawImage(source, 0, 0, null);
-        } finally {
-            graphics.dispose();
+        String previousHash = contact.getPictureHash();
+        boolean hadPicture = contact.isHasPicture();
+        copyPictureMetadata(contact, payload);
+        contact.setPictureStatus(PictureStatus.READY);
+        storePicture(contact, payload, hadPicture, previousHash);
+        eventPublisher.publishEvent(ContactChangedEvent.pictureChanged(contactId));
+        return PictureStatus.READY;
+    }
+
+    private PictureStatus failPicture(Long contactId, int version) {
+        Contact contact = lockPendingPicture(contactId, version);
+        if (contact == null) {
+            return null;
+        }
+        contact.setPictureStatus(PictureStatus.FAILED);
+        eventPublisher.publishEvent(ContactChangedEvent.pictureChanged(contactId));
+        return PictureStatus.FAILED;
+    }
+
+    private Contact lockPendingPicture(Long contactId, int version) {
+        Contact contact = contactRepository.lockById(contactId)
+                .filter(candidate -> candidate.getPictureVersion() == version
+                        && candidate.getPictureStatus() == PictureStatus.PROCESSING)
+                .orElse(null);
+        if (contact == null) {
+            log.info("Dropping processed picture for contact id={}: the contact was deleted or has a newer upload", contactId);
+        }
+        return contact;
+    }
+
+    /**
+     * Takes a reference on the new blob before writing it, so the garbage collector cannot remove
+     * a file that an upload of identical content is about to reuse, then drops the reference held
+     * on the previous picture.
+     */
+    private void storePicture(Contact contact, PicturePayload payload, boolean hadPicture, String previousHash) {
+        if (payload == null) {
+            return;
         }
-        return converted;
+        String hash = contact.getPictureHash();
+        pictureBlobRepository.acquire(hash, payload.contentType(), payload.data().length,
+                pictureProcessor.variantSpec(), Instant.now());
+        pictureStore.put(hash, payload.data());
+        payload.variants().forEach((width, data) -> pictureStore.put(PictureProcessor.variantKey(hash, width), data));
+        keepCollectableOnRollback(hash, payload);
+        if (hadPicture) {
+            releasePicture(contact.getId(), previousHash);
+        }
+    }
+
+    /**
+     * The files are written before the transaction commits, so a rollback (a conflicting edit
+     * failing the version check included) takes the blob row with it and leaves files the
+     * collector never hears of. An unreferenced row is put back in its own transaction instead,
+     * and the collector removes the files once the grace period is over.
+     */
+    private void keepCollectableOnRollback(String hash, PicturePayload payload) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        String variants = pictureProcessor.variantSpec();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                TransactionTemplate separate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+                separate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                try {
+                    separate.executeWithoutResult(tx -> pictureBlobRepository.adopt(hash, payload.contentType(),
+                            payload.data().length, variants, Instant.now()));
+                } catch (RuntimeException e) {
+                    log.warn("Could not hand picture {} of a rolled back upload to the garbage collector", hash, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * A picture that still sits in the legacy table holds no blob reference; deleting its row is
+     * all there is to do. Otherwise the contact's reference on the stored blob is given back.
+     */
+    private void releasePicture(Long contactId, String hash) {
+        if (contactPictureRepository.deleteByContactId(contactId) == 0 && hash != null) {
+            pictureBlobRepository.release(hash, Instant.now());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public PictureStatusResponse pictureStatus(Long id) {
+        ContactSummary contact = contactRepository.findById(id)
+                .map(ContactService::toSummary)
+                .orElseThrow(() -> new EntityNotFoundException("Contact not found"));
+        return new PictureStatusResponse(contact.id(), contact.pictureStatus(), pictureUrl(contact, null),
+                pictureSrcset(contact));
     }
 
     @Transactional(readOnly = true)
-    public PicturePayload loadPicture(Long id) {
-        log.info("Loading picture data for contact id={}", id);
-        Contact contact = contactRepository.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact not found"));
-        if (contact.getPictureData() == null || contact.getPictureData().length == 0) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Picture not found");
+    public PictureMetadata loadPictureMetadata(Long id) {
+        return contactRepository.findPictureMetadata(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Picture not found"));
+    }
+
+    /** The {@code v} parameter of versioned picture URLs: a prefix of the picture's content hash. */
+    public static String pictureVersion(String pictureHash) {
+        return pictureHash != null ? pictureHash.substring(0, PICTURE_URL_VERSION_LENGTH) : null;
+    }
+
+    /**
+     * The store key of what a request for {@code size} pixels is served: the smallest variant that
+     * is wide enough once it has been generated, the full picture otherwise.
+     */
+    public String pictureKey(PictureMetadata metadata, Integer size) {
+        Integer width = pictureProcessor.variantWidthFor(size);
+        if (width == null || metadata.hash() == null) {
+            return metadata.hash();
+        }
+        String key = PictureProcessor.variantKey(metadata.hash(), width);
+        return pictureStore.exists(key) ? key : metadata.hash();
+    }
+
+    /** Whether a request for {@code size} pixels is answered with the full picture by design. */
+    public boolean isFullPicture(Integer size) {
+        return pictureProcessor.variantWidthFor(size) == null;
+    }
+
+    /**
+     * Resolves the bytes stored under {@code key} (see {@link #pictureKey}), falling back to the
+     * legacy row of a picture that has not been migrated yet.
+     */
+    public StoredPicture loadPicture(PictureMetadata metadata, String key) {
+        if (key != null) {
+            Optional<Resource> stored = pictureStore.get(key);
+            if (stored.isPresent()) {
+                return new StoredPicture(stored.get(), metadata.contentType());
+            }
         }
-        return new PicturePayload(contact.getPictureData(), contact.getPictureContentType());
+        log.info("Loading legacy picture data for contact id={}", metadata.contactId());
+        ContactPicture picture = contactPictureRepository.findById(metadata.contactId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Picture not found"));
+        return new StoredPicture(new ByteArrayResource(picture.getData()), picture.getContentType());
+    }
+
+    /** A processed upload: the picture itself and its encoded variants by width. */
+    public record PicturePayload(byte[] data, String contentType, Map<Integer, byte[]> variants) {
     }
 
-    public record PicturePayload(byte[] data, String contentType) {
+    public record StoredPicture(Resource resource, String contentType) {
     }
 }
 
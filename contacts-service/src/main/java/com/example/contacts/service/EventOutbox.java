@@ -0,0 +1,50 @@
+package com.example.contacts.service;
+
+import com.example.contacts.model.OutboxEvent;
+import com.example.contacts.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Records Kafka events in the {@code outbox} table as part of the caller's transaction, so an
+ * event exists exactly when the change it describes was committed. Publishing is left to
+ * {@link OutboxRelay}, which is woken up once the transaction commits.
+ */
+@Component
+@Slf4j
+public class EventOutbox {
+
+    // The same mapper Spring Kafka's JsonSerializer uses, so records look as if they had been sent directly.
+    private static final ObjectMapper MAPPER = JacksonUtils.enhancedObjectMapper();
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String topic, String key, Object event) {
+        String payload;
+        try {
+            payload = MAPPER.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + event.getClass().getSimpleName(), e);
+        }
+        OutboxEvent saved = outboxEventRepository.save(new OutboxEvent(topic, key, event.getClass().getName(), payload));
+        log.info("Queued {} id={} for topic '{}'", event.getClass().getSimpleName(), saved.getId(), topic);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.wakeUp();
+            }
+        });
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.contacts.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The distinct contact names behind the type-ahead, as a sorted array searched by binary search.
+ * Names are keyed by their normalized form and counted, so a name disappears with the last contact
+ * that carries it and suggestions can put the most common names first; the spelling returned is
+ * the one indexed last. The merged names live in two
+ * {@code char[]} pools with {@code int[]} offsets instead of one {@code String} each, which keeps a
+ * name at its characters plus twelve bytes. Changes collect in a small sorted map that is merged
+ * into the arrays once it outgrows an eighth of them.
+ *
+ * <p>Suggestions rank names by how many contacts carry them. So that a short prefix does not walk
+ * every name it covers, the merge also notes the most common name of each block of {@link #BLOCK}
+ * names; a suggestion only reads the names of the blocks that can hold one of the best.
+ *
+ * <p>Not thread-safe: {@link ContactSearchIndex} only uses it under its lock.
+ */
+final class NameSuggestions {
+
+    private static final int MIN_MERGE_THRESHOLD = 4096;
+    static final int BLOCK = 64;
+
+    // Name i has key keys[keyOffsets[i], keyOffsets[i + 1]) and spelling displays[displayOffsets[i], ...).
+    private char[] keys = new char[0];
+    private int[] keyOffsets = {0};
+    private char[] displays = new char[0];
+    private int[] displayOffsets = {0};
+    private int[] counts = new int[0];
+    // Index of the most common name of each block of BLOCK merged names, the first one among equals.
+    private int[] blockBest = new int[0];
+    private int size;
+    private final TreeMap<String, Pending> pending = new TreeMap<>();
+
+    /** {@code position} follows key order across the merged names and the pending ones. */
+    private record Suggestion(String display, int count, long position) {
+    }
+
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingInt(Suggestion::count).reversed()
+            .thenComparingLong(Suggestion::position);
+
+    /** A count adjustment since the last merge and the newest spelling, if the name was added. */
+    private static final class Pending {
+        private int count;
+        private String display;
+    }
+
+    void add(String key, String display) {
+        Pending change = pending.computeIfAbsent(key, k -> new Pending());
+        change.count++;
+        change.display = display;
+        mergeIfNeeded();
+    }
+
+    void remove(String key) {
+        pending.computeIfAbsent(key, k -> new Pending()).count--;
+        mergeIfNeeded();
+    }
+
+    /**
+     * Up to {@code limit} names whose key starts with {@code prefix}, the ones carried by the most
+     * contacts first and in key order among equals. The prefix covers a range of the merged names;
+     * the blocks at its ends and those with pending changes are read name by name. Of the other
+     * blocks only the {@code limit} best by their most common name can hold a suggestion, since
+     * every block ranked above one of them contributes a better name. Only the names that make it
+     * into the heap of the best are turned into strings.
+     */
+    List<String> suggest(String prefix, int limit) {
+        // The worst suggestion kept is on top: fewest contacts, then last in key order.
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        int from = lowerBound(prefix, 0, size);
+        int to = prefixEnd(prefix, from);
+        Map<Integer, Pending> changed = new HashMap<>();
+        Set<Integer> changedBlocks = new HashSet<>();
+        int insertedAt = -1;
+        int inserted = 0;
+        for (Map.Entry<String, Pending> change : pending.tailMap(prefix, true).entrySet()) {
+            if (!change.getKey().startsWith(prefix)) {
+                break;
+            }
+            int at = lowerBound(change.getKey(), from, to);
+            if (at < to && compareKey(at, change.getKey()) == 0) {
+                changed.put(at, change.getValue());
+                changedBlocks.add(at / BLOCK);
+            } else {
+                // A new name sorts after merged name at - 1 and before merged name at.
+                inserted = at == insertedAt ? inserted + 1 : 0;
+                insertedAt = at;
+                offer(best, limit, change.getValue().count, ((long) at << 32) + inserted, change.getValue().display, -1);
+            }
+        }
+        // The most common names of the best blocks so far, best first.
+        int[] blocks = new int[limit];
+        int chosen = 0;
+        for (int block = from / BLOCK; from < to && block <= (to - 1) / BLOCK; block++) {
+            int start = block * BLOCK;
+            int end = Math.min(start + BLOCK, size);
+            if (start < from || end > to || (!changedBlocks.isEmpty() && changedBlocks.contains(block))) {
+                scan(Math.max(start, from), Math.min(end, to), changed, best, limit);
+            } else if (chosen < limit || ranksAbove(blockBest[block], blocks[limit - 1])) {
+                int at = chosen < limit ? chosen++ : limit - 1;
+                while (at > 0 && ranksAbove(blockBest[block], blocks[at - 1])) {
+                    blocks[at] = blocks[at - 1];
+                    at--;
+                }
+                blocks[at] = blockBest[block];
+            }
+        }
+        for (int b = 0; b < chosen; b++) {
+            int start = blocks[b] / BLOCK * BLOCK;
+            scan(start, Math.min(start + BLOCK, size), changed, best, limit);
+        }
+        List<Suggestion> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        return ranked.stream().map(Suggestion::display).toList();
+    }
+
+    /** Distinct names in the merged arrays. */
+    int size() {
+        return size;
+    }
+
+    /** Bytes held by the merged arrays; pending changes are bounded by the merge threshold. */
+    long memoryBytes() {
+        return 2L * (keys.length + displays.length)
+                + 4L * (keyOffsets.length + displayOffsets.length + counts.length + blockBest.length);
+    }
+
+    void merge() {
+        int keyChars = keys.length;
+        int displayChars = displays.length;
+        for (Map.Entry<String, Pending> change : pending.entrySet()) {
+            keyChars += change.getKey().length();
+            displayChars += change.getValue().display != null ? change.getValue().display.length() : 0;
+        }
+        int capacity = size + pending.size();
+        char[] mergedKeys = new char[keyChars];
+        int[] mergedKeyOffsets = new int[capacity + 1];
+        char[] mergedDisplays = new char[displayChars];
+        int[] mergedDisplayOffsets = new int[capacity + 1];
+        int[] mergedCounts = new int[capacity];
+        int merged = 0;
+        int i = 0;
+        Iterator<Map.Entry<String, Pending>> changes = pending.entrySet().iterator();
+        Map.Entry<String, Pending> change = changes.hasNext() ? changes.next() : null;
+        while (i < size || change != null) {
+            int order = i == size ? 1 : change == null ? -1 : compareKey(i, change.getKey());
+            int count;
+            int keyStart = mergedKeyOffsets[merged];
+            int displayStart = mergedDisplayOffsets[merged];
+            int keyLength;
+            int displayLength;
+            if (order < 0) {
+                count = counts[i];
+                keyLength = copy(keys, keyOffsets, i, mergedKeys, keyStart);
+                displayLength = copy(displays, displayOffsets, i, mergedDisplays, displayStart);
+                i++;
+            } else {
+                Pending pendingChange = change.getValue();
+                count = (order == 0 ? counts[i] : 0) + pendingChange.count;
+                keyLength = change.getKey().length();
+                change.getKey().getChars(0, keyLength, mergedKeys, keyStart);
+                if (pendingChange.display != null) {
+                    displayLength = pendingChange.display.length();
+                    pendingChange.display.getChars(0, displayLength, mergedDisplays, displayStart);
+                } else {
+                    displayLength = order == 0 ? copy(displays, displayOffsets, i, mergedDisplays, displayStart) : 0;
+                }
+                if (order == 0) {
+                    i++;
+                }
+                change = changes.hasNext() ? changes.next() : null;
+            }
+            if (count > 0) {
+                mergedCounts[merged] = count;
+                merged++;
+                mergedKeyOffsets[merged] = keyStart + keyLength;
+                mergedDisplayOffsets[merged] = displayStart + displayLength;
+            }
+        }
+        keys = Arrays.copyOf(mergedKeys, mergedKeyOffsets[merged]);
+        keyOffsets = Arrays.copyOf(mergedKeyOffsets, merged + 1);
+        displays = Arrays.copyOf(mergedDisplays, mergedDisplayOffsets[merged]);
+        displayOffsets = Arrays.copyOf(mergedDisplayOffsets, merged + 1);
+        counts = Arrays.copyOf(mergedCounts, merged);
+        size = merged;
+        pending.clear();
+        blockBest = new int[(size + BLOCK - 1) / BLOCK];
+        for (int block = 0; block < blockBest.length; block++) {
+            int start = block * BLOCK;
+            int most = start;
+            for (int j = start + 1; j < Math.min(start + BLOCK, size); j++) {
+                if (counts[j] > counts[most]) {
+                    most = j;
+                }
+            }
+            blockBest[block] = most;
+        }
+    }
+
+    private void mergeIfNeeded() {
+        if (pending.size() > Math.max(MIN_MERGE_THRESHOLD, size / 8)) {
+            merge();
+        }
+    }
+
+    /** Offers merged names {@code [start, end)} with their pending count adjustments applied. */
+    private void scan(int start, int end, Map<Integer, Pending> changed, PriorityQueue<Suggestion> best, int limit) {
+        for (int j = start; j < end; j++) {
+            Pending change = changed.isEmpty() ? null : changed.get(j);
+            int count = change == null ? counts[j] : counts[j] + change.count;
+            offer(best, limit, count, ((long) j << 32) + Integer.MAX_VALUE, change == null ? null : change.display, j);
+        }
+    }
+
+    private void offer(PriorityQueue<Suggestion> best, int limit, int count, long position, String display, int index) {
+        if (count <= 0) {
+            return;
+        }
+        if (best.size() == limit) {
+            Suggestion worst = best.peek();
+            if (count < worst.count() || (count == worst.count() && position > worst.position())) {
+                return;
+            }
+        }
+        best.add(new Suggestion(display != null ? display : display(index), count, position));
+        if (best.size() > limit) {
+            best.poll();
+        }
+    }
+
+    /** Whether merged name {@code index} ranks above merged name {@code other}. */
+    private boolean ranksAbove(int index, int other) {
+        return counts[index] > counts[other] || (counts[index] == counts[other] && index < other);
+    }
+
+    private static int copy(char[] from, int[] offsets, int index, char[] to, int at) {
+        int length = offsets[index + 1] - offsets[index];
+        System.arraycopy(from, offsets[index], to, at, length);
+        return length;
+    }
+
+    private String display(int index) {
+        return new String(displays, displayOffsets[index], displayOffsets[index + 1] - displayOffsets[index]);
+    }
+
+    /** Index of the first merged name in {@code [low, high)} whose key is not below {@code key}. */
+    private int lowerBound(String key, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** Index of the first merged name from {@code from} on whose key does not start with {@code prefix}. */
+    private int prefixEnd(String prefix, int from) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (startsWith(middle, prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** {@link String#compareTo} between the key of merged name {@code index} and {@code key}. */
+    private int compareKey(int index, String key) {
+        int start = keyOffsets[index];
+        int length = keyOffsets[index + 1] - start;
+        int common = Math.min(length, key.length());
+        for (int j = 0; j < common; j++) {
+            int difference = keys[start + j] - key.charAt(j);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length();
+    }
+
+    private boolean startsWith(int index, String prefix) {
+        int start = keyOffsets[index];
+        if (keyOffsets[index + 1] - start < prefix.length()) {
+            return false;
+        }
+        for (int j = 0; j < prefix.length(); j++) {
+            if (keys[start + j] != prefix.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.contacts.service;
+
+import com.example.contacts.model.OutboxEvent;
+import com.example.contacts.repository.OutboxEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Publishes outbox rows to Kafka. A batch is leased to this instance in a short transaction, sent
+ * in one go so the producer can pack the records into few compressed requests, and the
+ * acknowledged rows are deleted with a single statement. Records whose send failed, and the later
+ * records of the same key, are released and retried with the next batch, so each key keeps its
+ * order; delivery is at least once. A lease left behind by a crashed instance expires after
+ * {@code app.outbox.claim-lease-ms}. Drains run on one thread, started by a commit that added
+ * events or by the poll that catches anything a wake-up missed (e.g. rows left by a crash).
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    @Value("${app.outbox.batch-size:200}")
+    private int batchSize;
+    @Value("${app.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+    @Value("${app.outbox.claim-lease-ms:60000}")
+    private long leaseMs;
+    @Value("${app.instance-id:contacts-service}")
+    private String instanceId;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    @Autowired
+    @Qualifier("outboxKafkaTemplate")
+    private KafkaTemplate<String, String> kafkaTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("outbox-relay").daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(initialDelayString = "${app.outbox.poll-interval-ms:5000}", fixedDelayString = "${app.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /** Schedules a drain unless one is already waiting to start; commits during a drain schedule the next. */
+    public void wakeUp() {
+        if (drainPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainPending.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        drainPending.set(false);
+        try {
+            int published;
+            do {
+                published = relayBatch();
+            } while (published == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Outbox relay failed, pending events stay queued: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claims, publishes and deletes one batch; returns how many events were published. The claim
+     * is committed before anything is sent, so no connection or row lock is held while waiting
+     * for the broker.
+     */
+    int relayBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> claimBatch());
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            sends.add(kafkaTemplate.send(toRecord(event)));
+        }
+        kafkaTemplate.flush();
+        List<Long> acknowledged = new ArrayList<>(batch.size());
+        List<Long> retried = new ArrayList<>();
+        Set<String> failedKeys = new HashSet<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            String key = event.getMessageKey();
+            // Once an event of a key failed, the later ones are sent again after it, even if acknowledged.
+            if (await(sends.get(i), deadline, event) && (key == null || !failedKeys.contains(key))) {
+                acknowledged.add(event.getId());
+            } else {
+                retried.add(event.getId());
+                if (key != null) {
+                    failedKeys.add(key);
+                }
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!acknowledged.isEmpty()) {
+                outboxEventRepository.deleteAllByIdInBatch(acknowledged);
+            }
+            if (!retried.isEmpty()) {
+                outboxEventRepository.release(retried, instanceId);
+            }
+        });
+        if (!retried.isEmpty()) {
+            log.warn("Published {} of {} outbox events, the rest will be retried", acknowledged.size(), batch.size());
+        } else {
+            log.info("Published {} outbox events", acknowledged.size());
+        }
+        return acknowledged.size();
+    }
+
+    /**
+     * Leases the oldest unclaimed events to this instance. Events of a key are published in order,
+     * so a key's events are only taken up to the first one that is not in this batch, e.g. because
+     * another instance holds it or is about to retry it.
+     */
+    private List<OutboxEvent> claimBatch() {
+        Instant now = Instant.now();
+        List<OutboxEvent> unclaimed = outboxEventRepository.lockUnclaimed(now, PageRequest.of(0, batchSize));
+        if (unclaimed.isEmpty()) {
+            return unclaimed;
+        }
+        Set<String> keys = new HashSet<>();
+        List<Long> ids = new ArrayList<>(unclaimed.size());
+        for (OutboxEvent event : unclaimed) {
+            ids.add(event.getId());
+            if (event.getMessageKey() != null) {
+                keys.add(event.getMessageKey());
+            }
+        }
+        Map<String, Long> waitFor = new HashMap<>();
+        if (!keys.isEmpty()) {
+            outboxEventRepository.findFirstPendingExcept(keys, ids)
+                    .forEach(pending -> waitFor.put(pending.messageKey(), pending.firstId()));
+        }
+        Instant until = now.plusMillis(leaseMs);
+        List<OutboxEvent> claimed = new ArrayList<>(unclaimed.size());
+        for (OutboxEvent event : unclaimed) {
+            Long blockedFrom = event.getMessageKey() != null ? waitFor.get(event.getMessageKey()) : null;
+            if (blockedFrom == null || event.getId() < blockedFrom) {
+                event.setClaimedBy(instanceId);
+                event.setClaimedUntil(until);
+                claimed.add(event);
+            }
+        }
+        return claimed;
+    }
+
+    private static ProducerRecord<String, String> toRecord(OutboxEvent event) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(event.getTopic(), event.getMessageKey(), event.getPayload());
+        record.headers().add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                event.getEventType().getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private static boolean await(CompletableFuture<?> send, long deadline, OutboxEvent event) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            log.warn("Could not publish outbox event id={}: {}", event.getId(), e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            log.warn("Outbox event id={} not acknowledged in time", event.getId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
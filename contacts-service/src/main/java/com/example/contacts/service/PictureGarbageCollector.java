@@ -0,0 +1,69 @@
+package com.example.contacts.service;
+
+import com.example.contacts.repository.PictureBlobRepository;
+import com.example.contacts.storage.PictureStore;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes stored blobs that no contact has referenced for the grace period. Every candidate is
+ * re-checked under a row lock, and uploads take their reference through the same row, so a blob
+ * is never deleted while an upload of identical content is reusing it.
+ */
+@Component
+@Slf4j
+public class PictureGarbageCollector {
+
+    @Value("${app.pictures.gc.grace-period-seconds:3600}")
+    private long gracePeriodSeconds;
+    @Value("${app.pictures.gc.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private PictureBlobRepository pictureBlobRepository;
+    @Autowired
+    private PictureStore pictureStore;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Scheduled(initialDelayString = "${app.pictures.gc.interval-ms:3600000}",
+            fixedDelayString = "${app.pictures.gc.interval-ms:3600000}")
+    public void collect() {
+        int removed = collectBefore(Instant.now().minus(Duration.ofSeconds(gracePeriodSeconds)));
+        if (removed > 0) {
+            log.info("Removed {} orphaned pictures from the picture store", removed);
+        }
+    }
+
+    int collectBefore(Instant cutoff) {
+        List<String> candidates = pictureBlobRepository.findOrphans(cutoff, PageRequest.of(0, batchSize));
+        int removed = 0;
+        for (String hash : candidates) {
+            Boolean deleted = transactionTemplate.execute(status -> pictureBlobRepository.lockByHash(hash)
+                    .filter(blob -> blob.getRefCount() <= 0 && blob.getUpdatedAt().isBefore(cutoff))
+                    .map(blob -> {
+                        pictureStore.delete(hash);
+                        if (blob.getVariants() != null && !blob.getVariants().isBlank()) {
+                            for (String width : blob.getVariants().split(",")) {
+                                pictureStore.delete(PictureProcessor.variantKey(hash, Integer.parseInt(width)));
+                            }
+                        }
+                        pictureBlobRepository.delete(blob);
+                        return true;
+                    })
+                    .orElse(false));
+            if (Boolean.TRUE.equals(deleted)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
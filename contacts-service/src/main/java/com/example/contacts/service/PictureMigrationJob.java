@@ -0,0 +1,71 @@
+package com.example.contacts.service;
+
+import com.example.contacts.model.ContactPicture;
+import com.example.contacts.repository.ContactPictureRepository;
+import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.PictureBlobRepository;
+import com.example.contacts.storage.PictureStore;
+import java.time.Instant;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves picture bytes out of the legacy {@code contact_pictures} table into the
+ * {@link PictureStore}, one small transaction per batch. Each row is locked while it is moved, so
+ * a concurrent update of the same contact waits and then finds the row already gone.
+ */
+@Component
+@Slf4j
+public class PictureMigrationJob {
+
+    @Value("${app.pictures.migration.batch-size:50}")
+    private int batchSize;
+
+    @Autowired
+    private ContactPictureRepository contactPictureRepository;
+    @Autowired
+    private ContactRepository contactRepository;
+    @Autowired
+    private PictureBlobRepository pictureBlobRepository;
+    @Autowired
+    private PictureStore pictureStore;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Scheduled(initialDelayString = "${app.pictures.migration.initial-delay-ms:30000}",
+            fixedDelayString = "${app.pictures.migration.interval-ms:600000}")
+    public void migrate() {
+        long total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> migrateBatch());
+            total += moved;
+        } while (moved == batchSize);
+        if (total > 0) {
+            log.info("Moved {} legacy pictures to the picture store", total);
+        }
+    }
+
+    int migrateBatch() {
+        List<ContactPicture> batch = contactPictureRepository.lockMigrationBatch(PageRequest.of(0, batchSize));
+        for (ContactPicture picture : batch) {
+            String hash = PictureProcessor.sha256(picture.getData());
+            pictureBlobRepository.acquire(hash, picture.getContentType(), picture.getData().length, null, Instant.now());
+            pictureStore.put(hash, picture.getData());
+            contactRepository.updatePictureHash(picture.getContactId(), hash);
+            contactPictureRepository.deleteByContactId(picture.getContactId());
+            // Picture URLs carry the hash, so listings built before the move are out of date.
+            eventPublisher.publishEvent(ContactChangedEvent.pictureChanged(picture.getContactId()));
+        }
+        return batch.size();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.contacts.service;
+
+import com.example.contacts.model.PictureStatus;
+
+/**
+ * Published once an asynchronously processed upload has been applied ({@code READY}) or has
+ * failed ({@code FAILED}). Uploads superseded by a newer one publish nothing.
+ */
+public record PictureProcessedEvent(Long contactId, PictureStatus status) {
+}
@@ -0,0 +1,227 @@
+package com.example.contacts.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Turns uploads into the stored picture (at most {@code MAX_IMAGE_WIDTH} wide) plus one smaller
+ * variant per configured width. All of them are rendered from a single decode of the upload.
+ * Image dimensions are read from the header before anything is decoded: uploads over the pixel
+ * budget are rejected, and large ones are decoded with source subsampling, so the decoded raster
+ * is a few times the target size rather than the full resolution of the upload.
+ */
+@Component
+@Slf4j
+public class PictureProcessor {
+
+    static final int MAX_IMAGE_WIDTH = 500;
+    // Subsampling stops at twice the target width; the final resize then has real pixels to
+    // average instead of upscaling point samples.
+    private static final int SUBSAMPLING_HEADROOM = 2;
+    private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of("image/png", "image/jpeg", "image/jpg");
+    private static final Map<String, String> FORMAT_BY_CONTENT_TYPE = Map.ofEntries(
+            Map.entry("image/png", "png"),
+            Map.entry("image/jpeg", "jpg"),
+            Map.entry("image/jpg", "jpg")
+    );
+    private static final Map<String, String> CONTENT_TYPE_BY_FORMAT = Map.of("png", "image/png", "jpg", "image/jpeg");
+
+    private final List<Integer> variantWidths;
+    private final String variantSpec;
+    private final long maxPixels;
+
+    public PictureProcessor(@Value("${app.pictures.variant-widths:48,128}") List<Integer> variantWidths,
+                            @Value("${app.pictures.max-pixels:40000000}") long maxPixels) {
+        this.maxPixels = maxPixels;
+        this.variantWidths = variantWidths.stream()
+                .filter(width -> width > 0 && width < MAX_IMAGE_WIDTH)
+                .distinct()
+                .sorted()
+                .toList();
+        this.variantSpec = this.variantWidths.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    public ContactService.PicturePayload process(MultipartFile picture) {
+        if (picture == null || picture.isEmpty()) {
+            log.info("No picture provided for processing");
+            return null;
+        }
+        String contentType = picture.getContentType();
+        String formatName = formatName(contentType);
+        try (InputStream input = picture.getInputStream()) {
+            return process(input, contentType, formatName);
+        } catch (IOException e) {
+            log.error("Failed to read uploaded image: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read uploaded image.");
+        }
+    }
+
+    /** Processes an upload that was spooled to {@code file} in the given image format. */
+    public ContactService.PicturePayload process(Path file, String formatName) throws IOException {
+        String contentType = CONTENT_TYPE_BY_FORMAT.get(formatName);
+        if (contentType == null) {
+            throw new IOException("Unsupported spooled picture format '" + formatName + "'");
+        }
+        try (InputStream input = Files.newInputStream(file)) {
+            return process(input, contentType, formatName);
+        }
+    }
+
+    /**
+     * The image format ({@code png} or {@code jpg}) of an accepted upload content type. Anything
+     * else is rejected with 400.
+     */
+    public String formatName(String contentType) {
+        if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType.toLowerCase())) {
+            log.warn("Rejected picture with unsupported content type '{}'", contentType);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PNG and JPG images are supported.");
+        }
+        return FORMAT_BY_CONTENT_TYPE.get(contentType.toLowerCase());
+    }
+
+    private ContactService.PicturePayload process(InputStream upload, String contentType, String formatName)
+            throws IOException {
+        BufferedImage original = decode(upload);
+        BufferedImage processed = resizeIfNecessary(original, MAX_IMAGE_WIDTH, formatName);
+        return new ContactService.PicturePayload(encode(processed, formatName), contentType,
+                renderVariants(processed, formatName));
+    }
+
+    private BufferedImage decode(InputStream upload) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(upload)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                log.warn("Uploaded file could not be read as an image");
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unable to process uploaded image.");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("Rejected {}x{} picture over the pixel budget of {}", width, height, maxPixels);
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Image dimensions are too large.");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, width / (MAX_IMAGE_WIDTH * SUBSAMPLING_HEADROOM));
+                if (subsampling > 1) {
+                    log.info("Decoding {}x{} picture with {}x subsampling", width, height, subsampling);
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Renders the configured variants of an already stored picture. */
+    public Map<Integer, byte[]> renderVariants(byte[] picture, String contentType) throws IOException {
+        String formatName = contentType != null ? FORMAT_BY_CONTENT_TYPE.get(contentType.toLowerCase()) : null;
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(picture));
+        if (formatName == null || image == null) {
+            throw new IOException("Unsupported stored picture (" + contentType + ")");
+        }
+        return renderVariants(image, formatName);
+    }
+
+    /** Configured variant widths, ascending. */
+    public List<Integer> variantWidths() {
+        return variantWidths;
+    }
+
+    /** The configured widths as stored in {@code picture_blobs.variants}, e.g. {@code 48,128}. */
+    public String variantSpec() {
+        return variantSpec;
+    }
+
+    /** The smallest variant at least {@code size} pixels wide, or {@code null} for the full picture. */
+    public Integer variantWidthFor(Integer size) {
+        if (size == null) {
+            return null;
+        }
+        return variantWidths.stream().filter(width -> width >= size).findFirst().orElse(null);
+    }
+
+    /**
+     * Store key of a variant. A variant is a pure function of the picture and its width, so its key
+     * is derived from the picture's hash and can be computed without any lookup.
+     */
+    public static String variantKey(String pictureHash, int width) {
+        return sha256((pictureHash + "@" + width).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Largest first, each variant scaled from the previous one, so every step works on an image
+    // that is already close to its target size.
+    private Map<Integer, byte[]> renderVariants(BufferedImage image, String formatName) throws IOException {
+        if (variantWidths.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, byte[]> variants = new TreeMap<>();
+        BufferedImage current = image;
+        for (int width : variantWidths.reversed()) {
+            current = resizeIfNecessary(current, width, formatName);
+            variants.put(width, encode(current, formatName));
+        }
+        return Collections.unmodifiableMap(variants);
+    }
+
+    private static byte[] encode(BufferedImage image, String formatName) throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            if (!ImageIO.write(image, formatName, baos)) {
+                // Unusual decoded layouts (e.g. custom colour models) have no writer; fall back to a plain raster.
+                baos.reset();
+                int imageType = "png".equals(formatName) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+                if (!ImageIO.write(ImageScaler.convert(image, imageType), formatName, baos)) {
+                    throw new IOException("No " + formatName + " writer available");
+                }
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    private static BufferedImage resizeIfNecessary(BufferedImage source, int maxWidth, String formatName) {
+        int imageType = "png".equals(formatName) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = ImageScaler.scaleToWidth(source, maxWidth, imageType);
+        // JPEG cannot carry alpha; any other decoded raster is encoded as it is, without a copy.
+        if ("jpg".equals(formatName) && scaled.getColorModel().hasAlpha()) {
+            return ImageScaler.convert(scaled, BufferedImage.TYPE_INT_RGB);
+        }
+        return scaled;
+    }
+}
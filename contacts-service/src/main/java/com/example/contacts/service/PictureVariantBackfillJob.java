@@ -0,0 +1,135 @@
+package com.example.contacts.service;
+
+import com.example.contacts.model.PictureBlob;
+import com.example.contacts.repository.PictureBlobRepository;
+import com.example.contacts.storage.PictureStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Generates the configured picture variants for stored pictures that predate them (migrated
+ * pictures, or pictures uploaded before the variant widths changed). Pictures are rendered on a
+ * small fixed pool; when its queue is full the scheduler thread renders the next picture itself,
+ * which throttles the scan instead of queueing unbounded work.
+ */
+@Component
+@Slf4j
+public class PictureVariantBackfillJob {
+
+    @Value("${app.pictures.variants.backfill-threads:2}")
+    private int threads;
+    @Value("${app.pictures.variants.backfill-batch-size:100}")
+    private int batchSize;
+
+    @Autowired
+    private PictureBlobRepository pictureBlobRepository;
+    @Autowired
+    private PictureStore pictureStore;
+    @Autowired
+    private PictureProcessor pictureProcessor;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadIds = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "picture-variants-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(initialDelayString = "${app.pictures.variants.backfill-initial-delay-ms:60000}",
+            fixedDelayString = "${app.pictures.variants.backfill-interval-ms:600000}")
+    public void backfill() {
+        int generated = backfillAll();
+        if (generated > 0) {
+            log.info("Generated variants for {} stored pictures", generated);
+        }
+    }
+
+    int backfillAll() {
+        String spec = pictureProcessor.variantSpec();
+        if (spec.isEmpty()) {
+            return 0;
+        }
+        int generated = 0;
+        String after = "";
+        List<PictureBlob> batch;
+        do {
+            batch = pictureBlobRepository.findMissingVariants(spec, after, PageRequest.of(0, batchSize));
+            List<Future<Boolean>> results = new ArrayList<>(batch.size());
+            for (PictureBlob blob : batch) {
+                results.add(executor.submit(() -> backfill(blob, spec)));
+            }
+            for (Future<Boolean> result : results) {
+                if (awaitQuietly(result)) {
+                    generated++;
+                }
+            }
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1).getHash();
+            }
+        } while (batch.size() == batchSize && !Thread.currentThread().isInterrupted());
+        return generated;
+    }
+
+    private boolean backfill(PictureBlob blob, String spec) throws IOException {
+        Optional<Resource> stored = pictureStore.get(blob.getHash());
+        if (stored.isEmpty()) {
+            log.warn("Stored picture {} is missing, skipping its variants", blob.getHash());
+            return false;
+        }
+        byte[] picture;
+        try (InputStream in = stored.get().getInputStream()) {
+            picture = in.readAllBytes();
+        }
+        Map<Integer, byte[]> variants = pictureProcessor.renderVariants(picture, blob.getContentType());
+        variants.forEach((width, data) -> pictureStore.put(PictureProcessor.variantKey(blob.getHash(), width), data));
+        transactionTemplate.executeWithoutResult(status -> pictureBlobRepository.markVariants(blob.getHash(), spec));
+        return true;
+    }
+
+    private static boolean awaitQuietly(Future<Boolean> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.warn("Unable to generate picture variants: {}", e.getCause().getMessage());
+            return false;
+        }
+    }
+}
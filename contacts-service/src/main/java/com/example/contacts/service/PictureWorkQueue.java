@@ -0,0 +1,143 @@
+package com.example.contacts.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Runs asynchronous picture processing on a fixed pool sized to the CPUs. Work is admitted by
+ * reserving a slot first; there is one slot per worker plus one per queued job, so a request that
+ * cannot get one is turned away before it commits anything and the queue never grows past its
+ * limit. Uploads wait in the spool directory until a worker is done with them, which also lets
+ * them be picked up again after a restart.
+ */
+@Component
+@Slf4j
+public class PictureWorkQueue implements MeterBinder {
+
+    @Value("${app.pictures.async.workers:0}")
+    private int workers;
+    @Value("${app.pictures.async.queue-capacity:32}")
+    private int queueCapacity;
+    @Value("${app.pictures.async.spool-dir:data/spool}")
+    private Path spoolDir;
+
+    private ThreadPoolExecutor executor;
+    private Semaphore slots;
+    private final LongAdder rejections = new LongAdder();
+
+    @PostConstruct
+    void init() throws IOException {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        Files.createDirectories(spoolDir);
+        slots = new Semaphore(threads + queueCapacity);
+        AtomicInteger threadIds = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "picture-worker-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Picture processing pool started with {} workers and {} queued jobs at most", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Jobs that do not get to finish keep their spooled upload and are resumed on the next start.
+        executor.shutdownNow();
+    }
+
+    /** Reserves capacity for one job; every successful call must be followed by {@link #submit} or {@link #cancel}. */
+    public boolean tryReserve() {
+        if (slots.tryAcquire()) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /** Reserves capacity for one job, waiting for it if necessary. */
+    public void reserve() {
+        slots.acquireUninterruptibly();
+    }
+
+    /** Runs a reserved job; its slot is given back once the job has finished. */
+    public void submit(Runnable job) {
+        executor.execute(() -> {
+            try {
+                job.run();
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    /** Gives back a reservation that will not be submitted, deleting its spooled upload if any. */
+    public void cancel(Path spooled) {
+        if (spooled != null) {
+            discard(spooled);
+        }
+        slots.release();
+    }
+
+    /** Writes an upload to the spool directory under {@code name}. */
+    public Path spool(MultipartFile upload, String name) {
+        Path target = spoolDir.resolve(name);
+        try {
+            upload.transferTo(target);
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spool picture upload " + name, e);
+        }
+    }
+
+    /** Uploads left in the spool directory, e.g. by jobs interrupted by a shutdown. */
+    public List<Path> spooled() {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the picture spool", e);
+        }
+    }
+
+    public void discard(Path spooled) {
+        try {
+            Files.deleteIfExists(spooled);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled picture {}: {}", spooled, e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pictures.processing.queued", this, queue -> queue.executor.getQueue().size())
+                .description("Picture uploads waiting for a processing worker")
+                .register(registry);
+        Gauge.builder("pictures.processing.available", this, queue -> queue.slots.availablePermits())
+                .description("Picture uploads that can still be admitted for processing")
+                .register(registry);
+        FunctionCounter.builder("pictures.processing.rejected", rejections, LongAdder::sum)
+                .description("Picture uploads turned away because the processing queue was full")
+                .register(registry);
+    }
+}
@@ -8,7 +8,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,7 +22,7 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     @Autowired
-    private KafkaTemplate<String, SignupEvent> kafkaTemplate;
+    private EventOutbox eventOutbox;
     @Value("${app.kafka.topics.signup}")
     private String signupTopic;
 
@@ -40,8 +39,8 @@ public class UserService {
                 "ROLE_USER"
         );
         User saved = userRepository.save(user);
-        log.info("User '{}' persisted, publishing signup event", saved.getUsername());
-        kafkaTemplate.send(signupTopic, new SignupEvent(saved.getUsername()));
+        log.info("User '{}' persisted, queueing signup event", saved.getUsername());
+        eventOutbox.append(signupTopic, null, new SignupEvent(saved.getUsername()));
         return saved;
     }
 
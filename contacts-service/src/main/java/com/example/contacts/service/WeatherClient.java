@@ -1,82 +1,539 @@
 package com.example.contacts.service;
 
+import com.example.contacts.dto.WeatherBatchRequest;
 import com.example.contacts.dto.WeatherInfo;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
-import java.time.Duration;
-import java.time.Instant;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
 
 @Service
 @Slf4j
-public class WeatherClient {
+public class WeatherClient implements MeterBinder {
+
+    private static final ParameterizedTypeReference<List<WeatherInfo>> WEATHER_LIST =
+            new ParameterizedTypeReference<>() {
+            };
 
     @Autowired
     private RestClient.Builder restClientBuilder;
+    @Autowired(required = false)
+    private ClientHttpRequestFactory weatherRequestFactory;
     @Value("${app.weather.base-url}")
     private String baseUrl;
     @Value("${app.weather.cache-ttl-seconds:300}")
     private long cacheTtlSeconds;
+    @Value("${app.weather.cache-soft-ttl-seconds:120}")
+    private long cacheSoftTtlSeconds;
     @Value("${app.weather.error-cache-ttl-seconds:30}")
     private long errorCacheTtlSeconds;
+    @Value("${app.weather.error-cache-soft-ttl-seconds:10}")
+    private long errorCacheSoftTtlSeconds;
+    @Value("${app.weather.refresh-threads:4}")
+    private int refreshThreads;
+    @Value("${app.weather.refresh-queue-capacity:256}")
+    private int refreshQueueCapacity;
+    @Value("${app.weather.batch-deadline-ms:150}")
+    private long batchDeadlineMs;
+    @Value("${app.weather.max-concurrent-requests:8}")
+    private int maxConcurrentRequests;
+    @Value("${app.weather.bulkhead-max-wait-ms:250}")
+    private long bulkheadMaxWaitMs;
+    @Value("${app.weather.circuit-failure-threshold:5}")
+    private int circuitFailureThreshold;
+    @Value("${app.weather.circuit-open-seconds:30}")
+    private long circuitOpenSeconds;
+    @Value("${app.weather.batch-size:500}")
+    private int batchSize;
+    @Value("${app.weather.cache-max-entries:10000}")
+    private long cacheMaxEntries;
 
     private RestClient restClient;
-    private Duration cacheTtl;
-    private Duration errorCacheTtl;
-    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private long cacheTtlNanos;
+    private long cacheSoftTtlNanos;
+    private long errorCacheTtlNanos;
+    private long errorCacheSoftTtlNanos;
+    private Ticker ticker = Ticker.systemTicker();
+    private AsyncCache<String, CacheEntry> cache;
+    private Executor refreshExecutor;
+    private ExecutorService enrichmentExecutor;
+    private Semaphore outboundPermits;
+    private final LongAdder bulkheadRejections = new LongAdder();
+    private CircuitBreaker circuitBreaker;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
 
     @PostConstruct
     void init() {
+        if (weatherRequestFactory != null) {
+            restClientBuilder.requestFactory(weatherRequestFactory);
+        }
         this.restClient = restClientBuilder.baseUrl(baseUrl).build();
-        this.cacheTtl = Duration.ofSeconds(cacheTtlSeconds);
-        this.errorCacheTtl = Duration.ofSeconds(Math.max(1, errorCacheTtlSeconds));
+        this.cacheTtlNanos = TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+        this.cacheSoftTtlNanos = Math.min(cacheTtlNanos, TimeUnit.SECONDS.toNanos(cacheSoftTtlSeconds));
+        this.errorCacheTtlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, errorCacheTtlSeconds));
+        this.errorCacheSoftTtlNanos = Math.min(errorCacheTtlNanos, TimeUnit.SECONDS.toNanos(errorCacheSoftTtlSeconds));
+        this.batchSize = Math.max(1, batchSize);
+        // Caffeine bounds the cache with W-TinyLFU (frequency-aware admission and eviction), tracks
+        // expiry on its nanoTime ticker and, with a scheduler, sweeps expired entries in the background.
+        // Values are futures so that a pending load is visible to every caller asking for the same key.
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, cacheMaxEntries))
+                .expireAfter(new TtlExpiry())
+                .scheduler(Scheduler.systemScheduler())
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+        // Refreshes past the soft TTL run here; when the queue is full the stale value is simply
+        // served a little longer and the next hit tries again.
+        int threads = Math.max(1, refreshThreads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, refreshQueueCapacity)),
+                Thread.ofPlatform().name("weather-refresh-", 0).daemon().factory());
+        executor.allowCoreThreadTimeOut(true);
+        this.refreshExecutor = executor;
+        this.enrichmentExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("weather-batch-", 0).factory());
+        this.outboundPermits = new Semaphore(Math.max(1, maxConcurrentRequests));
+        this.circuitBreaker = new CircuitBreaker(circuitFailureThreshold,
+                TimeUnit.SECONDS.toNanos(circuitOpenSeconds), ticker::read);
+    }
+
+    /**
+     * Number of the soft-TTL window we are in. Weather attached to a response is refreshed at
+     * least once per window, so a response cached under one epoch carries no older weather than that.
+     */
+    public long weatherEpoch() {
+        return System.currentTimeMillis() / TimeUnit.SECONDS.toMillis(Math.max(1, cacheSoftTtlSeconds));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refreshExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+        if (enrichmentExecutor != null) {
+            enrichmentExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "weather");
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("weather.client.circuit.state", circuitBreaker, breaker -> breaker.state() == state ? 1 : 0)
+                    .description("1 for the current state of the weather-service circuit breaker")
+                    .tag("state", state.name().toLowerCase())
+                    .register(registry);
+        }
+        FunctionCounter.builder("weather.client.rejected", circuitBreaker, CircuitBreaker::rejectedCalls)
+                .description("Weather-service calls rejected without being sent")
+                .tag("reason", "circuit_open")
+                .register(registry);
+        FunctionCounter.builder("weather.client.rejected", bulkheadRejections, LongAdder::sum)
+                .description("Weather-service calls rejected without being sent")
+                .tag("reason", "bulkhead_full")
+                .register(registry);
+        Gauge.builder("weather.client.bulkhead.available", outboundPermits, Semaphore::availablePermits)
+                .description("Free slots for concurrent weather-service calls")
+                .register(registry);
     }
 
+    CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    long rejectedCalls() {
+        return circuitBreaker.rejectedCalls() + bulkheadRejections.sum();
+    }
+
+    CacheStats cacheStats() {
+        return cache.synchronous().stats();
+    }
+
+    long cacheSize() {
+        cache.synchronous().cleanUp();
+        return cache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Returns the weather for one location. Concurrent misses for the same cache key share a single
+     * in-flight future: the first caller performs the request and the others wait for its result.
+     * Entries past their soft TTL are returned as-is and refreshed in the background; only entries
+     * past the hard TTL make the caller wait for weather-service.
+     */
     public WeatherInfo fetchWeather(String location) {
         if (location == null || location.isBlank()) {
-            return new WeatherInfo("Unknown", "No address provided", 0);
+            return noAddress();
+        }
+        String key = normalize(location);
+        CompletableFuture<CacheEntry> flight = new CompletableFuture<>();
+        CompletableFuture<CacheEntry> shared = cache.get(key, (k, executor) -> flight);
+        if (shared != flight) {
+            log.trace("Returning cached or in-flight weather for '{}'", location);
+            CacheEntry entry = await(shared);
+            if (entry != null && entry.isStale(ticker.read())) {
+                refreshInBackground(Map.of(key, location));
+            }
+            return entry != null ? entry.info() : unavailable(location);
+        }
+        try {
+            flight.complete(requestSingle(location));
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        return await(flight).info();
+    }
+
+    /**
+     * Resolves weather for many locations at once. Locations are de-duplicated by their cache key,
+     * cache hits and lookups already in flight are shared, and the remaining misses go to
+     * weather-service in batch calls of at most {@code app.weather.batch-size} addresses, sent in
+     * parallel on virtual threads. The caller waits at most {@code app.weather.batch-deadline-ms};
+     * locations still outstanding then get a {@link WeatherInfo#isPending() pending} marker while
+     * their lookup completes into the cache.
+     *
+     * @return weather keyed by the location strings exactly as they were passed in
+     */
+    public Map<String, WeatherInfo> fetchWeatherBatch(Collection<String> locations) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDeadlineMs);
+        Map<String, String> requested = new LinkedHashMap<>();
+        for (String location : locations) {
+            if (location != null && !location.isBlank()) {
+                requested.putIfAbsent(normalize(location), location);
+            }
+        }
+        Map<String, CompletableFuture<CacheEntry>> lookups = new LinkedHashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (Map.Entry<String, String> location : requested.entrySet()) {
+            CompletableFuture<CacheEntry> flight = new CompletableFuture<>();
+            CompletableFuture<CacheEntry> shared = cache.get(location.getKey(), (k, executor) -> flight);
+            if (shared == flight) {
+                misses.add(location.getKey());
+            }
+            lookups.put(location.getKey(), shared);
+        }
+        if (!misses.isEmpty()) {
+            log.info("Requesting weather data for {} locations from weather-service ({} served from cache)",
+                    misses.size(), requested.size() - misses.size());
+            for (int from = 0; from < misses.size(); from += batchSize) {
+                List<String> chunk = misses.subList(from, Math.min(misses.size(), from + batchSize));
+                requestInBackground(chunk, requested, lookups);
+            }
+        }
+        Map<String, CacheEntry> entries = awaitUntil(lookups, deadline);
+        long now = ticker.read();
+        Map<String, String> stale = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> {
+            if (entry.isStale(now)) {
+                stale.put(key, requested.get(key));
+            }
+        });
+        refreshInBackground(stale);
+
+        Map<String, WeatherInfo> result = new HashMap<>();
+        for (String location : locations) {
+            if (location == null || location.isBlank()) {
+                result.put(location, noAddress());
+            } else {
+                String key = normalize(location);
+                CacheEntry entry = entries.get(key);
+                if (entry != null) {
+                    result.put(location, entry.info());
+                } else {
+                    result.put(location, lookups.get(key).isDone() ? unavailable(location) : pending(location));
+                }
+            }
         }
-        String key = location.trim().toLowerCase();
-        CacheEntry cached = cache.get(key);
-        if (cached != null && !cached.isExpired(applyTtl(cached))) {
-            log.trace("Returning cached weather for '{}'", location);
-            return cached.info();
+        return result;
+    }
+
+    /** Sends one batch call on a virtual thread; the bulkhead in {@link #callWeatherService} caps how many run at once. */
+    private void requestInBackground(List<String> keys, Map<String, String> requested,
+                                     Map<String, CompletableFuture<CacheEntry>> lookups) {
+        List<String> chunk = List.copyOf(keys);
+        Runnable task = () -> {
+            try {
+                Map<String, CacheEntry> loaded = requestBatch(chunk, requested);
+                chunk.forEach(key -> lookups.get(key).complete(loaded.get(key)));
+            } catch (RuntimeException | Error e) {
+                chunk.forEach(key -> lookups.get(key).completeExceptionally(e));
+                throw e;
+            }
+        };
+        try {
+            enrichmentExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            chunk.forEach(key -> lookups.get(key).completeExceptionally(e));
         }
+    }
+
+    private static Map<String, CacheEntry> awaitUntil(Map<String, CompletableFuture<CacheEntry>> lookups, long deadline) {
+        CompletableFuture<?> all = CompletableFuture.allOf(lookups.values().toArray(CompletableFuture[]::new));
+        try {
+            all.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.info("Weather for {} of {} locations still pending at the deadline",
+                    lookups.values().stream().filter(lookup -> !lookup.isDone()).count(), lookups.size());
+        } catch (ExecutionException | CancellationException e) {
+            log.debug("Weather lookup failed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Map<String, CacheEntry> entries = new HashMap<>();
+        lookups.forEach((key, lookup) -> {
+            CacheEntry entry = completedEntry(lookup);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        });
+        return entries;
+    }
+
+    private CacheEntry requestSingle(String location) {
         log.info("Requesting weather data for '{}' from weather-service", location);
         try {
-            WeatherInfo response = restClient.get()
+            WeatherInfo response = callWeatherService(() -> restClient.get()
                     .uri(uriBuilder -> uriBuilder.path("/api/weather")
                             .queryParam("location", location)
                             .build())
                     .accept(MediaType.APPLICATION_JSON)
                     .retrieve()
-                    .body(WeatherInfo.class);
-            WeatherInfo effective = response != null
-                    ? response
-                    : new WeatherInfo(location, "Unavailable", 0);
-            cache.put(key, new CacheEntry(effective, Instant.now(), false));
-            return effective;
+                    .body(WeatherInfo.class));
+            return newEntry(response != null ? response : new WeatherInfo(location, "Unavailable", 0), false);
+        } catch (CallRejectedException e) {
+            log.debug("Weather request for '{}' rejected: {}", location, e.getMessage());
+            return newEntry(unavailable(location), true);
         } catch (Exception e) {
             log.warn("Weather service unavailable for '{}': {}", location, e.getMessage());
-            WeatherInfo fallback = new WeatherInfo(location, "Weather service unavailable", 0);
-            cache.put(key, new CacheEntry(fallback, Instant.now(), true));
-            return fallback;
+            return newEntry(unavailable(location), true);
+        }
+    }
+
+    private Map<String, CacheEntry> requestMisses(List<String> misses, Map<String, String> requested) {
+        Map<String, CacheEntry> resolved = new HashMap<>();
+        for (int from = 0; from < misses.size(); from += batchSize) {
+            List<String> chunk = misses.subList(from, Math.min(misses.size(), from + batchSize));
+            resolved.putAll(requestBatch(chunk, requested));
+        }
+        return resolved;
+    }
+
+    private Map<String, CacheEntry> requestBatch(List<String> keys, Map<String, String> requested) {
+        List<String> locations = keys.stream().map(requested::get).toList();
+        Map<String, CacheEntry> resolved = new HashMap<>();
+        try {
+            List<WeatherInfo> response = callWeatherService(() -> restClient.post()
+                    .uri("/api/weather/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .body(new WeatherBatchRequest(locations))
+                    .retrieve()
+                    .body(WEATHER_LIST));
+            for (int i = 0; i < keys.size(); i++) {
+                WeatherInfo info = response != null && i < response.size() ? response.get(i) : null;
+                WeatherInfo effective = info != null ? info : new WeatherInfo(locations.get(i), "Unavailable", 0);
+                resolved.put(keys.get(i), newEntry(effective, false));
+            }
+        } catch (Exception e) {
+            if (e instanceof CallRejectedException) {
+                log.debug("Weather batch of {} locations rejected: {}", keys.size(), e.getMessage());
+            } else {
+                log.warn("Weather service unavailable for batch of {} locations: {}", keys.size(), e.getMessage());
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                resolved.put(keys.get(i), newEntry(unavailable(locations.get(i)), true));
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Runs one outbound call behind the circuit breaker and the bulkhead. An open circuit or a
+     * bulkhead that stays full for {@code bulkhead-max-wait-ms} rejects the call without touching
+     * the network. Client errors (4xx) do not count as failures of weather-service.
+     */
+    private <T> T callWeatherService(Supplier<T> call) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new CallRejectedException("circuit breaker is open");
+        }
+        boolean permitted;
+        try {
+            permitted = outboundPermits.tryAcquire(bulkheadMaxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permitted = false;
+        }
+        if (!permitted) {
+            circuitBreaker.releasePermission();
+            bulkheadRejections.increment();
+            throw new CallRejectedException("bulkhead is full");
+        }
+        try {
+            T result = call.get();
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (HttpClientErrorException e) {
+            circuitBreaker.onSuccess();
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            throw e;
+        } finally {
+            outboundPermits.release();
+        }
+    }
+
+    /**
+     * Reloads the given keys (cache key to original location) off the request thread. A key is
+     * refreshed by at most one task at a time; a failed refresh keeps a previously good value and
+     * retries it after the error soft TTL.
+     */
+    private void refreshInBackground(Map<String, String> stale) {
+        Map<String, String> claimed = new LinkedHashMap<>();
+        stale.forEach((key, location) -> {
+            if (refreshing.add(key)) {
+                claimed.put(key, location);
+            }
+        });
+        if (claimed.isEmpty()) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(claimed));
+        } catch (RejectedExecutionException e) {
+            log.debug("Weather refresh queue is full, skipping refresh of {} locations", claimed.size());
+            refreshing.removeAll(claimed.keySet());
+        }
+    }
+
+    private void refresh(Map<String, String> claimed) {
+        try {
+            List<String> keys = new ArrayList<>(claimed.keySet());
+            Map<String, CacheEntry> fresh = keys.size() == 1
+                    ? Map.of(keys.get(0), requestSingle(claimed.get(keys.get(0))))
+                    : requestMisses(keys, claimed);
+            fresh.forEach((key, entry) -> {
+                CacheEntry current = completedEntry(cache.asMap().get(key));
+                if (entry.error() && current != null && !current.error()) {
+                    entry = new CacheEntry(current.info(), false, ticker.read() + errorCacheSoftTtlNanos,
+                            current.expiresAt());
+                }
+                cache.put(key, CompletableFuture.completedFuture(entry));
+            });
+        } finally {
+            refreshing.removeAll(claimed.keySet());
+        }
+    }
+
+    private CacheEntry newEntry(WeatherInfo info, boolean error) {
+        long now = ticker.read();
+        return error
+                ? new CacheEntry(info, true, now + errorCacheSoftTtlNanos, now + errorCacheTtlNanos)
+                : new CacheEntry(info, false, now + cacheSoftTtlNanos, now + cacheTtlNanos);
+    }
+
+    private static CacheEntry completedEntry(CompletableFuture<CacheEntry> future) {
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    private static CacheEntry await(CompletableFuture<CacheEntry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            return null;
         }
     }
 
-    private Duration applyTtl(CacheEntry entry) {
-        return entry.error() ? errorCacheTtl : cacheTtl;
+    private static String normalize(String location) {
+        return location.trim().toLowerCase();
+    }
+
+    private static WeatherInfo noAddress() {
+        return new WeatherInfo("Unknown", "No address provided", 0);
     }
 
-    private record CacheEntry(WeatherInfo info, Instant cachedAt, boolean error) {
-        boolean isExpired(Duration ttl) {
-            return cachedAt.plus(ttl).isBefore(Instant.now());
+    private static WeatherInfo unavailable(String location) {
+        return new WeatherInfo(location, "Weather service unavailable", 0, false, true);
+    }
+
+    private static WeatherInfo pending(String location) {
+        return new WeatherInfo(location, "Weather pending", 0, true);
+    }
+
+    /** Thrown instead of calling the weather service while the circuit is open or the bulkhead is full. */
+    private static final class CallRejectedException extends RuntimeException {
+
+        CallRejectedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /** {@code refreshAt} and {@code expiresAt} are soft and hard deadlines on the cache ticker. */
+    private record CacheEntry(WeatherInfo info, boolean error, long refreshAt, long expiresAt) {
+
+        boolean isStale(long now) {
+            return now - refreshAt >= 0;
+        }
+    }
+
+    /** Entries are dropped at their hard deadline, whichever TTL produced it. */
+    private static final class TtlExpiry implements Expiry<String, CacheEntry> {
+
+        @Override
+        public long expireAfterCreate(String key, CacheEntry entry, long currentTime) {
+            return Math.max(0, entry.expiresAt() - currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CacheEntry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CacheEntry entry, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
 }
@@ -0,0 +1,110 @@
+package com.example.contacts.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps every blob in its own file under {@code app.pictures.store-dir}, sharded by the first two
+ * hash bytes ({@code ab/cd/abcd...}) so no directory grows unbounded. Writes go to a temporary
+ * file in the target directory that is then renamed into place, so readers never see a partial
+ * blob and concurrent writers of the same content simply race to an identical file.
+ */
+@Component
+@Slf4j
+public class FileSystemPictureStore implements PictureStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    public FileSystemPictureStore(@Value("${app.pictures.store-dir:data/pictures}") Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create picture store at " + this.root, e);
+        }
+        log.info("Picture store at {}", this.root);
+    }
+
+    @Override
+    public void put(String hash, byte[] data) {
+        Path target = pathFor(hash);
+        if (Files.isRegularFile(target)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store picture " + hash, e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    @Override
+    public Optional<Resource> get(String hash) {
+        Path path = pathFor(hash);
+        return Files.isRegularFile(path) ? Optional.of(new FileSystemResource(path)) : Optional.empty();
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.isRegularFile(pathFor(hash));
+    }
+
+    @Override
+    public boolean delete(String hash) {
+        try {
+            return Files.deleteIfExists(pathFor(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to delete picture " + hash, e);
+        }
+    }
+
+    Path pathFor(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid picture hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static void deleteQuietly(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Unable to remove temporary picture file {}: {}", temp, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.contacts.storage;
+
+import java.util.Optional;
+import org.springframework.core.io.Resource;
+
+/**
+ * Content-addressed storage for contact picture bytes. Blobs are keyed by the lowercase hex
+ * SHA-256 of their content, so identical pictures are stored once; reference counting lives in
+ * {@code picture_blobs}, not in the store.
+ */
+public interface PictureStore {
+
+    /** Stores {@code data} under {@code hash}; a blob that already exists is left untouched. */
+    void put(String hash, byte[] data);
+
+    /** The stored blob, or empty when nothing is stored under {@code hash}. */
+    Optional<Resource> get(String hash);
+
+    boolean exists(String hash);
+
+    /** @return whether a blob was removed */
+    boolean delete(String hash);
+}
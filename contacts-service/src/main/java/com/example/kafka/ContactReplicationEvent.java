@@ -0,0 +1,31 @@
+package com.example.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tells the other contacts-service replicas that a contact was {@code created}, {@code updated} or
+ * {@code deleted}, keyed by the contact id so the changes of one contact stay in order.
+ * {@code name} and {@code address} are the values after a create or edit and {@code null} when
+ * they did not change; {@code version} lets consumers drop redeliveries and stale changes.
+ * {@code origin} is the instance id of the replica that made the change.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactReplicationEvent {
+
+  private String type;
+
+  private Long contactId;
+
+  private long version;
+
+  private String name;
+
+  private String address;
+
+  private String origin;
+
+}
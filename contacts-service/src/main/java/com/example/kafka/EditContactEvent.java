@@ -1,19 +1,42 @@
 package com.example.kafka;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import java.time.Instant;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * Published when a contact is updated, keyed by the contact id so that all edits of one contact
+ * land on the same partition in order. {@code version} is the contact's optimistic-lock version
+ * after the edit, which lets consumers drop duplicates and stale redeliveries.
+ */
 @Data
 @NoArgsConstructor
 public class EditContactEvent {
 
-  private String username;
+  private Long contactId;
+
+  private String owner;
+
+  // Older events carried the contact name as "username".
+  @JsonAlias("username")
+  private String name;
+
+  private String oldAddress;
+
+  private String newAddress;
+
+  private long version;
 
   private Instant updatedAt;
 
-  public EditContactEvent(String username) {
-    this.username = username;
+  public EditContactEvent(Long contactId, String owner, String name, String oldAddress, String newAddress, long version) {
+    this.contactId = contactId;
+    this.owner = owner;
+    this.name = name;
+    this.oldAddress = oldAddress;
+    this.newAddress = newAddress;
+    this.version = version;
     this.updatedAt = Instant.now();
   }
 
@@ -1,7 +1,12 @@
 ﻿const state = {
     user: null,
     contacts: [],
-    editingContactId: null
+    editingContactId: null,
+    search: '',
+    nextCursor: null,
+    changeToken: null,
+    loadingPage: false,
+    requestId: 0
 };
 
 const elements = {
@@ -13,6 +18,7 @@ const elements = {
     signupLink: document.getElementById('signupLink'),
     logoutForm: document.getElementById('logoutForm'),
     searchInput: document.getElementById('searchInput'),
+    searchSuggestions: document.getElementById('searchSuggestions'),
     contactModal: new bootstrap.Modal(document.getElementById('contactModal')),
     contactModalTitle: document.getElementById('contactModalTitle'),
     contactForm: document.getElementById('contactForm'),
@@ -21,7 +27,8 @@ const elements = {
     addressInput: document.getElementById('contactAddress'),
     pictureInput: document.getElementById('contactPicture'),
     currentPictureWrapper: document.getElementById('currentPictureWrapper'),
-    currentPicturePreview: document.getElementById('currentPicturePreview')
+    currentPicturePreview: document.getElementById('currentPicturePreview'),
+    contactsSentinel: document.getElementById('contactsSentinel')
 };
 
 const debounce = (fn, delay = 300) => {
@@ -57,17 +64,79 @@ function updateAuthUi() {
     elements.signupLink.classList.toggle('d-none', isAuthenticated);
 }
 
+async function fetchContactsPage(search, cursor) {
+    const params = new URLSearchParams();
+    if (search) {
+        params.append('search', search);
+    }
+    if (cursor) {
+        params.append('cursor', cursor);
+    }
+    const response = await fetch(`/api/contacts?${params.toString()}`, { credentials: 'include' });
+    if (!response.ok) {
+        throw new Error(`Unexpected status ${response.status}`);
+    }
+    return response.json();
+}
+
+// Returns how many suggestions are now shown under the search box.
+async function loadSuggestions(prefix) {
+    if (!elements.searchSuggestions) {
+        return 0;
+    }
+    let names = [];
+    if (prefix) {
+        try {
+            const params = new URLSearchParams({ prefix, k: '10' });
+            const response = await fetch(`/api/contacts/suggest?${params.toString()}`, { credentials: 'include' });
+            if (response.ok) {
+                names = await response.json();
+            }
+        } catch (error) {
+            console.error('Failed to load suggestions', error);
+        }
+    }
+    elements.searchSuggestions.replaceChildren(...names.map(name => {
+        const option = document.createElement('option');
+        option.value = name;
+        return option;
+    }));
+    return names.length;
+}
+
+async function fetchChanges(since) {
+    const params = new URLSearchParams();
+    if (since !== null && since !== undefined) {
+        params.append('since', since);
+    }
+    const response = await fetch(`/api/contacts/changes?${params.toString()}`, { credentials: 'include' });
+    if (response.status === 410) {
+        return null;
+    }
+    if (!response.ok) {
+        throw new Error(`Unexpected status ${response.status}`);
+    }
+    return response.json();
+}
+
 async function loadContacts(search = '') {
+    const requestId = ++state.requestId;
+    state.search = search;
+    state.nextCursor = null;
+    state.loadingPage = true;
     if (elements.loadingState) {
         elements.loadingState.classList.remove('d-none');
     }
     try {
-        const params = new URLSearchParams();
-        if (search) {
-            params.append('search', search);
+        // The token is taken before the page, so later syncs may repeat a change but never miss one.
+        const changes = await fetchChanges(null).catch(() => null);
+        const page = await fetchContactsPage(search, null);
+        if (requestId !== state.requestId) {
+            return;
         }
-        const response = await fetch(`/api/contacts?${params.toString()}`, { credentials: 'include' });
-        state.contacts = await response.json();
+        state.contacts = page.items;
+        state.nextCursor = page.next;
+        state.changeToken = changes ? changes.token : null;
         renderContacts();
     } catch (error) {
         console.error('Unable to load contacts', error);
@@ -76,10 +145,98 @@ async function loadContacts(search = '') {
                 <div class="alert alert-danger">Unable to load contacts right now.</div>
             </div>`;
     } finally {
+        if (requestId === state.requestId) {
+            state.loadingPage = false;
+        }
         if (elements.loadingState) {
             elements.loadingState.classList.add('d-none');
         }
     }
+    fillViewport();
+}
+
+async function loadNextPage() {
+    if (state.loadingPage || !state.nextCursor) {
+        return;
+    }
+    const requestId = state.requestId;
+    state.loadingPage = true;
+    try {
+        const page = await fetchContactsPage(state.search, state.nextCursor);
+        if (requestId !== state.requestId) {
+            return;
+        }
+        state.contacts = state.contacts.concat(page.items);
+        state.nextCursor = page.next;
+        elements.contactsContainer.insertAdjacentHTML('beforeend', page.items.map(renderContactCard).join(''));
+    } catch (error) {
+        console.error('Unable to load more contacts', error);
+    } finally {
+        if (requestId === state.requestId) {
+            state.loadingPage = false;
+        }
+    }
+    fillViewport();
+}
+
+function compareContacts(a, b) {
+    return a.name.localeCompare(b.name, undefined, { sensitivity: 'base' }) || a.id - b.id;
+}
+
+// Applies the changes since the last sync to the loaded list instead of reloading it. Search
+// results are ranked by the server, so a filtered list is simply reloaded.
+async function syncContacts() {
+    if (state.search || state.changeToken === null) {
+        await loadContacts(state.search);
+        return;
+    }
+    const requestId = state.requestId;
+    try {
+        let changes;
+        do {
+            changes = await fetchChanges(state.changeToken);
+            if (requestId !== state.requestId) {
+                return;
+            }
+            if (!changes) {
+                await loadContacts(state.search);
+                return;
+            }
+            applyChanges(changes);
+            state.changeToken = changes.token;
+        } while (changes.more);
+    } catch (error) {
+        console.error('Unable to sync contacts', error);
+        await loadContacts(state.search);
+        return;
+    }
+    renderContacts();
+}
+
+function applyChanges(changes) {
+    const touched = new Set(changes.deleted.concat(changes.changed.map(contact => contact.id)));
+    state.contacts = state.contacts.filter(contact => !touched.has(contact.id));
+    const last = state.contacts[state.contacts.length - 1];
+    for (const contact of changes.changed) {
+        // Contacts past the last loaded one arrive with their page.
+        if (state.nextCursor && last && compareContacts(contact, last) > 0) {
+            continue;
+        }
+        const at = state.contacts.findIndex(existing => compareContacts(contact, existing) < 0);
+        state.contacts.splice(at === -1 ? state.contacts.length : at, 0, contact);
+    }
+}
+
+// The observer only fires on visibility changes, so keep paging while the
+// sentinel is still on screen after a short page was appended.
+function fillViewport() {
+    if (!elements.contactsSentinel || !state.nextCursor) {
+        return;
+    }
+    const rect = elements.contactsSentinel.getBoundingClientRect();
+    if (rect.top < window.innerHeight) {
+        loadNextPage();
+    }
 }
 
 function renderContacts() {
@@ -91,47 +248,46 @@ function renderContacts() {
         return;
     }
 
-    elements.contactsContainer.innerHTML = state.contacts.map(contact => {
-        const isOwner = state.user && state.user.username === contact.ownerUsername;
-        const weather = contact.weather
-            ? `<span class="badge rounded-pill text-bg-info weather-pill">${contact.weather.description} &bull; ${contact.weather.temperatureCelsius.toFixed(1)}&deg;C</span>`
-            : '';
-        const pictureMarkup = contact.hasPicture
-            ? `<img src="/api/contacts/${contact.id}/picture?ts=${encodeURIComponent(contact.updatedAt)}" alt="${contact.name}" class="contact-card-img">`
-            : `<div class="contact-card-img-placeholder">No image</div>`;
-        const buttons = isOwner ? `
-            <div class="d-flex gap-2 mt-3">
-                <button class="btn btn-sm btn-outline-primary" data-action="edit" data-id="${contact.id}">Edit</button>
-                <button class="btn btn-sm btn-outline-danger" data-action="delete" data-id="${contact.id}">Delete</button>
-            </div>` : '';
+    elements.contactsContainer.innerHTML = state.contacts.map(renderContactCard).join('');
+}
+
+function renderContactCard(contact) {
+    const isOwner = state.user && state.user.username === contact.ownerUsername;
+    const weather = contact.weather && contact.weather.pending
+        ? `<span class="badge rounded-pill text-bg-secondary weather-pill">${contact.weather.description}</span>`
+        : contact.weather
+        ? `<span class="badge rounded-pill text-bg-info weather-pill">${contact.weather.description} &bull; ${contact.weather.temperatureCelsius.toFixed(1)}&deg;C</span>`
+        : '';
+    const pictureMarkup = contact.pictureStatus === 'PROCESSING' && !contact.hasPicture
+        ? `<div class="contact-card-img-placeholder">Processing…</div>`
+        : contact.hasPicture
+        ? `<img src="${contact.pictureUrl}"${contact.pictureSrcset ? ` srcset="${contact.pictureSrcset}" sizes="100px"` : ''} alt="${contact.name}" class="contact-card-img" loading="lazy">`
+        : `<div class="contact-card-img-placeholder">No image</div>`;
+    const buttons = isOwner ? `
+        <div class="d-flex gap-2 mt-3">
+            <button class="btn btn-sm btn-outline-primary" data-action="edit" data-id="${contact.id}">Edit</button>
+            <button class="btn btn-sm btn-outline-danger" data-action="delete" data-id="${contact.id}">Delete</button>
+        </div>` : '';
 
-        return `
-            <div class="col-12 col-md-6 col-lg-4">
-                <div class="card h-100 contact-card">
-                    <div class="card-body d-flex flex-column">
-                        <div class="d-flex gap-3 align-items-start mb-3">
-                            <div class="flex-shrink-0 text-center">
-                                ${pictureMarkup}
-                            </div>
-                            <div class="flex-grow-1">
-                                <div class="d-flex justify-content-between align-items-start"><h2 class="h5 card-title mb-0">${contact.name}</h2></div><p class="card-text mt-2 mb-0">${contact.address}</p>${contact.weather ? `<div class="mt-2">${weather}</div>` : ``}
-                            </div>
+    return `
+        <div class="col-12 col-md-6 col-lg-4">
+            <div class="card h-100 contact-card">
+                <div class="card-body d-flex flex-column">
+                    <div class="d-flex gap-3 align-items-start mb-3">
+                        <div class="flex-shrink-0 text-center">
+                            ${pictureMarkup}
                         </div>
-                        <div class="mt-auto">
-                            <span class="badge text-bg-secondary">Owner: ${contact.ownerUsername}</span>
-                            ${buttons}
+                        <div class="flex-grow-1">
+                            <div class="d-flex justify-content-between align-items-start"><h2 class="h5 card-title mb-0">${contact.name}</h2></div><p class="card-text mt-2 mb-0">${contact.address}</p>${contact.weather ? `<div class="mt-2">${weather}</div>` : ``}
                         </div>
                     </div>
+                    <div class="mt-auto">
+                        <span class="badge text-bg-secondary">Owner: ${contact.ownerUsername}</span>
+                        ${buttons}
+                    </div>
                 </div>
-            </div>`;
-    }).join('');
-
-    elements.contactsContainer.querySelectorAll('button[data-action="edit"]').forEach(button => {
-        button.addEventListener('click', () => openEditModal(button.dataset.id));
-    });
-    elements.contactsContainer.querySelectorAll('button[data-action="delete"]').forEach(button => {
-        button.addEventListener('click', () => deleteContact(button.dataset.id));
-    });
+            </div>
+        </div>`;
 }
 
 function openCreateModal() {
@@ -166,7 +322,7 @@ function openEditModal(id) {
         if (contact.hasPicture) {
             elements.currentPictureWrapper.classList.remove('d-none');
             if (elements.currentPicturePreview) {
-                elements.currentPicturePreview.src = `/api/contacts/${contact.id}/picture?ts=${encodeURIComponent(contact.updatedAt)}`;
+                elements.currentPicturePreview.src = contact.pictureUrl;
                 elements.currentPicturePreview.alt = `${contact.name} picture`;
             }
         } else {
@@ -212,7 +368,10 @@ async function upsertContact(event) {
             throw new Error(message);
         }
         elements.contactModal.hide();
-        await loadContacts(elements.searchInput.value.trim());
+        await syncContacts();
+        if (response.status === 202) {
+            waitForPicture(response.headers.get('Location'));
+        }
     } catch (error) {
         elements.modalAlert.innerHTML = `
             <div class="alert alert-danger" role="alert">${error.message}</div>
@@ -220,6 +379,28 @@ async function upsertContact(event) {
     }
 }
 
+// The picture of a 202 response is processed in the background; sync once it is done.
+async function waitForPicture(statusUrl, attempt = 0) {
+    if (!statusUrl || attempt >= 30) {
+        return;
+    }
+    await new Promise(resolve => setTimeout(resolve, Math.min(500 * (attempt + 1), 3000)));
+    try {
+        const response = await fetch(statusUrl, { credentials: 'include' });
+        if (!response.ok) {
+            return;
+        }
+        const status = await response.json();
+        if (status.status === 'PROCESSING') {
+            await waitForPicture(statusUrl, attempt + 1);
+        } else {
+            await syncContacts();
+        }
+    } catch (error) {
+        console.error('Unable to check picture status', error);
+    }
+}
+
 async function deleteContact(id) {
     if (!confirm('Delete this contact?')) {
         return;
@@ -230,7 +411,7 @@ async function deleteContact(id) {
             credentials: 'include'
         });
         if (response.status === 204) {
-            await loadContacts(elements.searchInput.value.trim());
+            await syncContacts();
         } else {
             throw new Error('Unable to delete contact.');
         }
@@ -243,19 +424,66 @@ function exportCsv() {
     window.location.href = '/api/contacts/export';
 }
 
+// The server only says that something changed; the change feed says what. Bursts of
+// notifications collapse into one sync, and EventSource reconnects on its own.
+function listenForChanges() {
+    if (!('EventSource' in window)) {
+        return;
+    }
+    const sync = debounce(() => syncContacts(), 500);
+    new EventSource('/api/contacts/stream').addEventListener('contact', sync);
+}
+
 function registerEventListeners() {
     elements.addContactBtn?.addEventListener('click', openCreateModal);
     elements.contactForm?.addEventListener('submit', upsertContact);
-    elements.searchInput?.addEventListener('input', debounce(event => {
-        loadContacts(event.target.value.trim());
-    }, 350));
+    // While suggestions are shown, typing only refreshes them; the list is searched once a
+    // suggestion is picked, Enter is pressed or the text no longer matches any name.
+    const suggestOrSearch = debounce(async value => {
+        if (await loadSuggestions(value) === 0 && value !== state.search) {
+            loadContacts(value);
+        }
+    }, 150);
+    elements.searchInput?.addEventListener('input', event => {
+        const value = event.target.value.trim();
+        // Picking a datalist option fires an input event without a typing inputType.
+        if (!event.inputType || event.inputType === 'insertReplacementText') {
+            loadContacts(value);
+        } else {
+            suggestOrSearch(value);
+        }
+    });
+    elements.searchInput?.addEventListener('keydown', event => {
+        if (event.key === 'Enter') {
+            loadContacts(event.target.value.trim());
+        }
+    });
     elements.exportBtn?.addEventListener('click', exportCsv);
+    elements.contactsContainer?.addEventListener('click', event => {
+        const button = event.target.closest('button[data-action]');
+        if (!button) {
+            return;
+        }
+        if (button.dataset.action === 'edit') {
+            openEditModal(button.dataset.id);
+        } else if (button.dataset.action === 'delete') {
+            deleteContact(button.dataset.id);
+        }
+    });
+    if (elements.contactsSentinel && 'IntersectionObserver' in window) {
+        new IntersectionObserver(entries => {
+            if (entries.some(entry => entry.isIntersecting)) {
+                loadNextPage();
+            }
+        }, { rootMargin: '400px 0px' }).observe(elements.contactsSentinel);
+    }
 }
 
 (async function init() {
     registerEventListeners();
     await fetchCurrentUser();
     await loadContacts();
+    listenForChanges();
 })();
 
 
@@ -0,0 +1,109 @@
+package com.example.contacts.config;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.kafka.EditContactEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+/**
+ * Sends the same burst of edit events to an embedded broker with the client defaults and with the
+ * outbox producer from {@link KafkaConfig}, and compares how the producer packed them. Timings are
+ * only logged: they depend on the machine, records per request and compression do not.
+ */
+@EmbeddedKafka(partitions = 10, topics = OutboxProducerThroughputTest.TOPIC)
+class OutboxProducerThroughputTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxProducerThroughputTest.class);
+
+    static final String TOPIC = "edit-contact-throughput";
+    private static final int EVENTS = 20_000;
+    private static final ObjectMapper MAPPER = JacksonUtils.enhancedObjectMapper();
+
+    @Test
+    void tunedProducerPacksMoreEventsPerRequestAndCompressesThem(EmbeddedKafkaBroker broker) throws Exception {
+        List<String> payloads = payloads();
+        KafkaProperties properties = new KafkaProperties();
+        properties.setBootstrapServers(List.of(broker.getBrokersAsString()));
+
+        Map<String, Object> defaults = new HashMap<>(properties.buildProducerProperties(null));
+        defaults.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        defaults.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        Result baseline = send(new DefaultKafkaProducerFactory<>(defaults), payloads);
+        Result tuned = send(new KafkaConfig().outboxProducerFactory(properties, 20, 65536, "lz4", "all", true), payloads);
+
+        log.info("default producer: {}", baseline);
+        log.info("outbox producer:  {}", tuned);
+        assertTrue(tuned.recordsPerRequest > baseline.recordsPerRequest,
+                "outbox producer should batch more events per request");
+        assertTrue(tuned.compressionRate < 0.8, "outbox batches should be compressed");
+    }
+
+    private static Result send(ProducerFactory<String, String> factory, List<String> payloads) throws Exception {
+        KafkaTemplate<String, String> template = new KafkaTemplate<>(factory);
+        try {
+            // Warm up metadata and the connection so the timing covers only the burst.
+            template.send(TOPIC, "0", payloads.get(0)).get(30, TimeUnit.SECONDS);
+            long start = System.nanoTime();
+            List<CompletableFuture<?>> sends = new ArrayList<>(payloads.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                sends.add(template.send(TOPIC, String.valueOf(i % 500), payloads.get(i)));
+            }
+            template.flush();
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Map<MetricName, ? extends Metric> metrics = template.metrics();
+            return new Result(payloads.size() / seconds,
+                    metric(metrics, "records-per-request-avg"), metric(metrics, "compression-rate-avg"));
+        } finally {
+            template.destroy();
+            ((DefaultKafkaProducerFactory<String, String>) factory).destroy();
+        }
+    }
+
+    private static double metric(Map<MetricName, ? extends Metric> metrics, String name) {
+        return metrics.entrySet().stream()
+                .filter(entry -> entry.getKey().name().equals(name) && entry.getKey().group().equals("producer-metrics"))
+                .mapToDouble(entry -> ((Number) entry.getValue().metricValue()).doubleValue())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static List<String> payloads() throws Exception {
+        List<String> payloads = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            long contactId = i % 500;
+            payloads.add(MAPPER.writeValueAsString(new EditContactEvent(contactId, "user" + (contactId % 20),
+                    "Contact " + contactId, contactId + " Old Street, Springfield", i + " New Street, Springfield", i / 500 + 1)));
+        }
+        return payloads;
+    }
+
+    private record Result(double eventsPerSecond, double recordsPerRequest, double compressionRate) {
+
+        @Override
+        public String toString() {
+            return String.format("%,.0f events/s, %.1f events/request, compression %.2f",
+                    eventsPerSecond, recordsPerRequest, compressionRate);
+        }
+    }
+}
@@ -1,35 +1,69 @@
 package com.example.contacts.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.example.contacts.config.SecurityConfig;
+import com.example.contacts.dto.ContactPageResponse;
 import com.example.contacts.dto.ContactResponse;
 import com.example.contacts.dto.WeatherInfo;
+import com.example.contacts.model.Contact;
+import com.example.contacts.model.PictureStatus;
+import com.example.contacts.repository.PictureMetadata;
+import com.example.contacts.service.ContactChangeLog;
+import com.example.contacts.service.ContactChangeStream;
+import com.example.contacts.service.ContactListingCache;
 import com.example.contacts.service.ContactService;
 import com.example.contacts.service.DatabaseUserDetailsService;
+import com.example.contacts.service.WeatherClient;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(ContactController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, ContactListingCache.class})
 class ContactControllerIntegrationTest {
 
+    private static final String PICTURE_HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final String VARIANT_KEY = "60303ae22b998861bce3b28f33eec1be758a213c86c93c076dbe9f558c11c752";
+    private static final Instant PICTURE_UPDATED_AT = Instant.parse("2024-10-18T08:30:00Z");
+    private static final String CSV = "name,address,pictureAvailable,updatedAt\nJohn Doe,123 Main St,no,2024-10-18T08:30:00Z\n";
+
     static {
         System.setProperty("net.bytebuddy.experimental", "true");
     }
@@ -43,19 +77,138 @@ class ContactControllerIntegrationTest {
     @MockBean
     private DatabaseUserDetailsService databaseUserDetailsService;
 
+    @MockBean
+    private WeatherClient weatherClient;
+
+    @MockBean
+    private ContactChangeStream contactChangeStream;
+
+    @MockBean
+    private ContactChangeLog contactChangeLog;
+
     @Test
-    void exportContactsReturnsCsvForAuthenticatedUser() throws Exception {
-        String csv = "name,address,pictureAvailable,updatedAt\nJohn Doe,123 Main St,no,2024-10-18T08:30:00Z\n";
-        when(contactService.exportCsv("alice")).thenReturn(csv);
+    void exportContactsStreamsCsvForAuthenticatedUser() throws Exception {
+        stubExport();
 
-        mockMvc.perform(get("/api/contacts/export")
+        MvcResult started = mockMvc.perform(get("/api/contacts/export")
                         .with(user("alice").roles("USER")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
                 .andExpect(status().isOk())
                 .andExpect(content().contentTypeCompatibleWith("text/csv"))
                 .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, org.hamcrest.Matchers.containsString("contacts.csv")))
-                .andExpect(content().string(csv));
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string(CSV));
+
+        verify(contactService).exportCsv(eq("alice"), any(OutputStream.class));
+    }
+
+    @Test
+    void exportContactsIsGzippedWhenClientAcceptsIt() throws Exception {
+        stubExport();
+
+        MvcResult started = mockMvc.perform(get("/api/contacts/export")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                        .with(user("alice").roles("USER")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        try (GZIPInputStream body = new GZIPInputStream(
+                new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals(CSV, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void stubExport() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(CSV.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(contactService).exportCsv(eq("alice"), any(OutputStream.class));
+    }
+
+    @Test
+    void pictureCarriesValidatorsAndIsImmutableUnderItsVersionedUrl() throws Exception {
+        PictureMetadata metadata = new PictureMetadata(7L, PICTURE_HASH, PICTURE_UPDATED_AT, "image/png");
+        when(contactService.loadPictureMetadata(7L)).thenReturn(metadata);
+        when(contactService.pictureKey(metadata, null)).thenReturn(PICTURE_HASH);
+        when(contactService.isFullPicture(null)).thenReturn(true);
+        when(contactService.loadPicture(metadata, PICTURE_HASH))
+                .thenReturn(new ContactService.StoredPicture(new ByteArrayResource(new byte[] {1, 2, 3}), "image/png"));
+
+        mockMvc.perform(get("/api/contacts/7/picture").param("v", PICTURE_HASH.substring(0, 16)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + PICTURE_HASH + "\""))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, PICTURE_UPDATED_AT.toEpochMilli()))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 3))
+                .andExpect(content().bytes(new byte[] {1, 2, 3}));
+    }
+
+    @Test
+    void storedPictureIsHandedToSendfileWhenTheConnectorSupportsIt(@TempDir Path dir) throws Exception {
+        Path file = Files.write(dir.resolve(PICTURE_HASH), new byte[] {1, 2, 3, 4});
+        PictureMetadata metadata = new PictureMetadata(7L, PICTURE_HASH, PICTURE_UPDATED_AT, "image/png");
+        when(contactService.loadPictureMetadata(7L)).thenReturn(metadata);
+        when(contactService.pictureKey(metadata, null)).thenReturn(PICTURE_HASH);
+        when(contactService.loadPicture(metadata, PICTURE_HASH))
+                .thenReturn(new ContactService.StoredPicture(new FileSystemResource(file), "image/png"));
+
+        mockMvc.perform(get("/api/contacts/7/picture")
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", file.toFile().getAbsolutePath()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 4L))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void conditionalPictureRequestIsAnsweredWithoutLoadingTheBytes() throws Exception {
+        when(contactService.loadPictureMetadata(7L))
+                .thenReturn(new PictureMetadata(7L, PICTURE_HASH, PICTURE_UPDATED_AT, "image/png"));
+        when(contactService.pictureKey(any(), any())).thenReturn(PICTURE_HASH);
+
+        mockMvc.perform(get("/api/contacts/7/picture")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + PICTURE_HASH + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(content().bytes(new byte[0]));
+
+        verify(contactService, never()).loadPicture(any(), any());
+    }
+
+    @Test
+    void variantIsServedUnderItsOwnValidatorAndFallsBackUncachedUntilGenerated() throws Exception {
+        PictureMetadata metadata = new PictureMetadata(7L, PICTURE_HASH, PICTURE_UPDATED_AT, "image/png");
+        when(contactService.loadPictureMetadata(7L)).thenReturn(metadata);
+        when(contactService.pictureKey(metadata, 48)).thenReturn(VARIANT_KEY);
+        when(contactService.loadPicture(metadata, VARIANT_KEY))
+                .thenReturn(new ContactService.StoredPicture(new ByteArrayResource(new byte[] {4}), "image/png"));
+
+        mockMvc.perform(get("/api/contacts/7/picture")
+                        .param("v", PICTURE_HASH.substring(0, 16))
+                        .param("size", "48"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + VARIANT_KEY + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(content().bytes(new byte[] {4}));
+
+        when(contactService.pictureKey(metadata, 48)).thenReturn(PICTURE_HASH);
+        when(contactService.loadPicture(metadata, PICTURE_HASH))
+                .thenReturn(new ContactService.StoredPicture(new ByteArrayResource(new byte[] {1, 2, 3}), "image/png"));
 
-        verify(contactService).exportCsv("alice");
+        mockMvc.perform(get("/api/contacts/7/picture")
+                        .param("v", PICTURE_HASH.substring(0, 16))
+                        .param("size", "48"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + PICTURE_HASH + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
     }
 
     @Test
@@ -65,21 +218,105 @@ class ContactControllerIntegrationTest {
                 "John Doe",
                 "123 Main St",
                 false,
+                null,
+                null,
+                PictureStatus.READY,
                 "owner",
                 Instant.parse("2024-10-18T08:30:00Z"),
                 new WeatherInfo("Test City", "Sunny", 21.5)
         );
-        when(contactService.listContacts("john")).thenReturn(List.of(response));
+        when(contactService.listContacts("john", "abc", 20))
+                .thenReturn(new ContactPageResponse(List.of(response), "next-cursor"));
 
-        mockMvc.perform(get("/api/contacts").param("search", "john"))
+        mockMvc.perform(get("/api/contacts")
+                        .param("search", "john")
+                        .param("cursor", "abc")
+                        .param("limit", "20"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$[0].name").value("John Doe"))
-                .andExpect(jsonPath("$[0].address").value("123 Main St"))
-                .andExpect(jsonPath("$[0].ownerUsername").value("owner"))
-                .andExpect(jsonPath("$[0].weather.description").value("Sunny"))
-                .andExpect(jsonPath("$[0].weather.temperatureCelsius").value(21.5));
+                .andExpect(jsonPath("$.items[0].name").value("John Doe"))
+                .andExpect(jsonPath("$.items[0].address").value("123 Main St"))
+                .andExpect(jsonPath("$.items[0].ownerUsername").value("owner"))
+                .andExpect(jsonPath("$.items[0].weather.description").value("Sunny"))
+                .andExpect(jsonPath("$.items[0].weather.temperatureCelsius").value(21.5))
+                .andExpect(jsonPath("$.next").value("next-cursor"));
+
+        verify(contactService).listContacts(eq("john"), eq("abc"), eq(20));
+    }
+
+    @Test
+    void listingIsServedFromCacheAndRevalidatedUntilTheDataChanges() throws Exception {
+        ContactResponse response = new ContactResponse(1L, "John Doe", "123 Main St", false, null, null,
+                PictureStatus.READY, "owner", Instant.parse("2024-10-18T08:30:00Z"), null);
+        when(contactService.listContacts(null, null, null))
+                .thenReturn(new ContactPageResponse(List.of(response), null));
+
+        MvcResult first = mockMvc.perform(get("/api/contacts"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.items[0].name").value("John Doe"))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/api/contacts"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(first.getResponse().getContentAsByteArray()));
+        mockMvc.perform(get("/api/contacts").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        verify(contactService, times(1)).listContacts(null, null, null);
+
+        when(contactChangeLog.current()).thenReturn(1L);
+
+        mockMvc.perform(get("/api/contacts").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(contactService, times(2)).listContacts(null, null, null);
+    }
+
+    @Test
+    void listingWithPendingWeatherIsNeitherCachedNorTagged() throws Exception {
+        ContactResponse response = new ContactResponse(1L, "John Doe", "123 Main St", false, null, null,
+                PictureStatus.READY, "owner", Instant.parse("2024-10-18T08:30:00Z"),
+                new WeatherInfo("Test City", "Weather pending", 0, true));
+        when(contactService.listContacts(null, null, null))
+                .thenReturn(new ContactPageResponse(List.of(response), null));
+
+        mockMvc.perform(get("/api/contacts"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.items[0].weather.pending").value(true));
+        mockMvc.perform(get("/api/contacts"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+
+        verify(contactService, times(2)).listContacts(null, null, null);
+    }
 
-        verify(contactService).listContacts(eq("john"));
+    @Test
+    void uploadProcessedInTheBackgroundIsAcceptedWithItsStatusUrl() throws Exception {
+        ContactResponse response = new ContactResponse(7L, "Jane Doe", "1 High St", false, null, null,
+                PictureStatus.PROCESSING, "alice", PICTURE_UPDATED_AT, null);
+        when(contactService.create(any(), eq("alice"))).thenReturn(response);
+
+        mockMvc.perform(multipart("/api/contacts")
+                        .file(new MockMultipartFile("picture", "jane.png", "image/png", new byte[] {1, 2, 3}))
+                        .param("name", "Jane Doe")
+                        .param("address", "1 High St")
+                        .with(user("alice").roles("USER")))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/api/contacts/7/picture/status"))
+                .andExpect(jsonPath("$.pictureStatus").value("PROCESSING"));
+    }
+
+    @Test
+    void concurrentEditIsReportedAsConflict() throws Exception {
+        when(contactService.update(eq(7L), any(), eq("alice")))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Contact.class, 7L));
+
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/contacts/7")
+                        .param("name", "Jane Doe")
+                        .param("address", "2 High St")
+                        .with(user("alice").roles("USER")))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").exists());
     }
 }
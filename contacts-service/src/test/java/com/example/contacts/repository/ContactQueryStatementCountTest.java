@@ -0,0 +1,130 @@
+package com.example.contacts.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.example.contacts.dto.ContactPageResponse;
+import com.example.contacts.model.Contact;
+import com.example.contacts.model.User;
+import com.example.contacts.service.ContactChangeLog;
+import com.example.contacts.service.ContactSearchIndex;
+import com.example.contacts.service.ContactService;
+import com.example.contacts.service.EventOutbox;
+import com.example.contacts.service.PictureProcessor;
+import com.example.contacts.service.PictureWorkQueue;
+import com.example.contacts.service.WeatherClient;
+import com.example.contacts.storage.PictureStore;
+import jakarta.persistence.EntityManagerFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Runs the listing and export queries against an in-memory H2 database and counts the JDBC
+ * statements Hibernate prepares. Every contact gets its own owner,
+ * which is the worst case for lazy owner loading.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:contacts;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "app.contacts.search-index.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ContactService.class, ContactSearchIndex.class, ContactChangeLog.class, PictureProcessor.class})
+class ContactQueryStatementCountTest {
+
+    static {
+        System.setProperty("net.bytebuddy.experimental", "true");
+    }
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private WeatherClient weatherClient;
+
+    @MockBean
+    private EventOutbox eventOutbox;
+
+    @MockBean
+    private PictureStore pictureStore;
+
+    @MockBean
+    private PictureWorkQueue pictureWorkQueue;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 150})
+    void listingUsesOneStatementRegardlessOfRowCount(int rows) {
+        seedContactsWithDistinctOwners(rows);
+
+        statistics.clear();
+        ContactPageResponse page = contactService.listContacts(null, null, 200);
+
+        assertEquals(rows, page.getItems().size());
+        assertEquals("owner-0", page.getItems().get(0).getOwnerUsername());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        contactService.listContacts("contact", null, 200);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 150})
+    void exportUsesFixedStatementCountRegardlessOfRowCount(int rows) throws IOException {
+        User owner = entityManager.persist(new User("exporter", "secret", "ROLE_USER"));
+        for (int i = 0; i < rows; i++) {
+            entityManager.persist(new Contact(String.format("contact %04d", i), "Street " + i, owner));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = contactService.exportCsv("exporter", out);
+
+        assertEquals(rows, written);
+        assertEquals(rows + 1, out.toString(StandardCharsets.UTF_8).lines().count());
+        // One statement resolves the user, one selects the export rows.
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    private void seedContactsWithDistinctOwners(int rows) {
+        for (int i = 0; i < rows; i++) {
+            User owner = entityManager.persist(new User("owner-" + i, "secret", "ROLE_USER"));
+            entityManager.persist(new Contact(String.format("contact %04d", i), "Street " + i, owner));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.contacts.dto.ContactRequest;
+import com.example.contacts.dto.ContactResponse;
+import com.example.contacts.dto.PictureStatusResponse;
+import com.example.contacts.model.Contact;
+import com.example.contacts.model.PictureStatus;
+import com.example.contacts.model.User;
+import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.UserRepository;
+import com.example.contacts.storage.FileSystemPictureStore;
+import com.example.contacts.storage.PictureStore;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Uploads pictures with background processing enabled, on a single worker and no queue, so the
+ * pool is full as soon as one job is admitted. Nothing runs in a test transaction: jobs are only
+ * handed to the worker once the request transaction commits.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:async-pictures;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "app.pictures.async.enabled=true",
+        "app.pictures.async.workers=1",
+        "app.pictures.async.queue-capacity=0"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ContactService.class, ContactSearchIndex.class, ContactChangeLog.class, PictureProcessor.class, PictureWorkQueue.class, FileSystemPictureStore.class})
+class AsyncPictureProcessingTest {
+
+    static {
+        System.setProperty("net.bytebuddy.experimental", "true");
+    }
+
+    @TempDir
+    static Path dataDir;
+
+    @DynamicPropertySource
+    static void pictureDirectories(DynamicPropertyRegistry registry) {
+        registry.add("app.pictures.store-dir", () -> dataDir.resolve("store").toString());
+        registry.add("app.pictures.async.spool-dir", () -> dataDir.resolve("spool").toString());
+    }
+
+    @Autowired
+    private ContactService contactService;
+    @Autowired
+    private PictureWorkQueue pictureWorkQueue;
+    @Autowired
+    private PictureStore pictureStore;
+    @Autowired
+    private ContactRepository contactRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private WeatherClient weatherClient;
+
+    @MockBean
+    private EventOutbox eventOutbox;
+
+    @Test
+    void uploadsAreStoredInTheBackgroundAfterTheContactIsCommitted() throws Exception {
+        userRepository.save(new User("alice", "secret", "ROLE_USER"));
+
+        ContactResponse created = contactService.create(request("Alice", png(800, 400)), "alice");
+
+        assertEquals(PictureStatus.PROCESSING, created.getPictureStatus());
+        assertFalse(created.isHasPicture());
+        PictureStatusResponse status = awaitProcessed(created.getId());
+        assertEquals(PictureStatus.READY, status.getStatus());
+        assertNotNull(status.getPictureUrl());
+        Contact contact = contactRepository.findById(created.getId()).orElseThrow();
+        assertTrue(contact.isHasPicture());
+        assertTrue(pictureStore.exists(contact.getPictureHash()));
+        assertTrue(pictureStore.exists(PictureProcessor.variantKey(contact.getPictureHash(), 48)));
+        try (Stream<Path> spooled = Files.list(dataDir.resolve("spool"))) {
+            assertEquals(0, spooled.count());
+        }
+    }
+
+    @Test
+    void uploadsAreRefusedWithoutSavingAnythingWhileThePoolIsFull() throws Exception {
+        userRepository.save(new User("bob", "secret", "ROLE_USER"));
+        long contacts = contactRepository.count();
+        assertTrue(pictureWorkQueue.tryReserve());
+        try {
+            ContactRequest request = request("Bob", png(64, 32));
+            ResponseStatusException rejected = assertThrows(ResponseStatusException.class,
+                    () -> contactService.create(request, "bob"));
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+            assertEquals(contacts, contactRepository.count());
+        } finally {
+            pictureWorkQueue.cancel(null);
+        }
+    }
+
+    @Test
+    void spooledUploadsAreResumedWithoutWaitingForAFreeWorker() throws Exception {
+        User owner = userRepository.save(new User("carol", "secret", "ROLE_USER"));
+        Contact contact = new Contact("Carol", "Street", owner);
+        contact.setPictureVersion(1);
+        contact.setPictureStatus(PictureStatus.PROCESSING);
+        Long id = contactRepository.save(contact).getId();
+        Files.write(dataDir.resolve("spool").resolve(id + "-1.png"), png(64, 32));
+        assertTrue(pictureWorkQueue.tryReserve());
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), contactService::resumeSpooledPictures);
+            assertEquals(PictureStatus.PROCESSING, contactService.pictureStatus(id).getStatus());
+        } finally {
+            pictureWorkQueue.cancel(null);
+        }
+
+        assertEquals(PictureStatus.READY, awaitProcessed(id).getStatus());
+    }
+
+    private PictureStatusResponse awaitProcessed(Long contactId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        PictureStatusResponse status = contactService.pictureStatus(contactId);
+        while (status.getStatus() == PictureStatus.PROCESSING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            status = contactService.pictureStatus(contactId);
+        }
+        return status;
+    }
+
+    private static ContactRequest request(String name, byte[] picture) {
+        ContactRequest request = new ContactRequest();
+        request.setName(name);
+        request.setAddress("Street");
+        request.setPicture(new MockMultipartFile("picture", "picture.png", "image/png", picture));
+        return request;
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.contacts.model.Contact;
+import com.example.contacts.model.DeletedContact;
+import com.example.contacts.model.User;
+import com.example.contacts.repository.ContactChange;
+import com.example.contacts.repository.DeletedContactRepository;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Writes through the change log against H2, whose sequence rows come from {@code import.sql}
+ * as Liquibase would insert them.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:contact-changes;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "app.contacts.changes.max-batch=3",
+        "app.contacts.changes.tombstone-retention-days=1"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ContactChangeLog.class)
+class ContactChangeLogTest {
+
+    static {
+        System.setProperty("net.bytebuddy.experimental", "true");
+    }
+
+    @Autowired
+    private ContactChangeLog contactChangeLog;
+
+    @Autowired
+    private DeletedContactRepository deletedContactRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void changesAndTombstonesAfterATokenAreReturnedOnceEach() {
+        User owner = entityManager.persist(new User("alice", "secret", "ROLE_USER"));
+        Contact anna = save(new Contact("Anna", "1 High St", owner));
+        Contact bob = save(new Contact("Bob", "2 Low St", owner));
+        long token = contactChangeLog.current();
+
+        anna.setAddress("3 Mill Rd");
+        contactChangeLog.recordChange(anna.getId());
+        entityManager.remove(bob);
+        contactChangeLog.recordDeletion(bob.getId());
+        Contact carl = save(new Contact("Carl", "4 Oak Ave", owner));
+
+        ContactChangeLog.Slice slice = contactChangeLog.changesSince(token);
+
+        assertEquals(List.of(anna.getId(), carl.getId()), slice.changed().stream().map(ContactChange::id).toList());
+        assertEquals("3 Mill Rd", slice.changed().get(0).address());
+        assertEquals(List.of(bob.getId()), slice.deleted());
+        assertEquals(contactChangeLog.current(), slice.token());
+        assertFalse(slice.more());
+        assertTrue(contactChangeLog.changesSince(slice.token()).changed().isEmpty());
+    }
+
+    @Test
+    void longFeedsArriveInBatchesWithoutGapsOrRepeats() {
+        User owner = entityManager.persist(new User("bob", "secret", "ROLE_USER"));
+        long start = contactChangeLog.current();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Contact contact = save(new Contact("Contact " + i, "Street " + i, owner));
+            expected.add(contact.getId());
+            if (i % 2 == 1) {
+                entityManager.remove(contact);
+                contactChangeLog.recordDeletion(contact.getId());
+            }
+        }
+
+        List<Long> seen = new ArrayList<>();
+        long token = start;
+        ContactChangeLog.Slice slice;
+        do {
+            slice = contactChangeLog.changesSince(token);
+            slice.changed().forEach(change -> seen.add(change.id()));
+            seen.addAll(slice.deleted());
+            token = slice.token();
+        } while (slice.more());
+
+        assertEquals(expected.stream().sorted().toList(), seen.stream().distinct().sorted().toList());
+        assertEquals(contactChangeLog.current(), token);
+    }
+
+    @Test
+    void tokensOlderThanThePrunedTombstonesMustReload() {
+        User owner = entityManager.persist(new User("carol", "secret", "ROLE_USER"));
+        Contact contact = save(new Contact("Dora", "5 Elm St", owner));
+        long token = contactChangeLog.current();
+        entityManager.remove(contact);
+        contactChangeLog.recordDeletion(contact.getId());
+        DeletedContact tombstone = deletedContactRepository.findAll().get(0);
+        tombstone.setDeletedAt(Instant.now().minus(2, ChronoUnit.DAYS));
+        entityManager.flush();
+
+        contactChangeLog.pruneTombstones();
+
+        ResponseStatusException expired = assertThrows(ResponseStatusException.class,
+                () -> contactChangeLog.changesSince(token));
+        assertEquals(HttpStatus.GONE, expired.getStatusCode());
+        assertTrue(contactChangeLog.changesSince(contactChangeLog.current()).deleted().isEmpty());
+        assertThrows(ResponseStatusException.class, () -> contactChangeLog.changesSince(contactChangeLog.current() + 1));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void aTransactionTakesItsNumbersOnlyWhenItCommits() {
+        long token = contactChangeLog.current();
+
+        Long id = transactionTemplate.execute(status -> {
+            User owner = entityManager.persist(new User("dave", "secret", "ROLE_USER"));
+            Contact contact = entityManager.persist(new Contact("Erin", "6 Ash St", owner));
+            eventPublisher.publishEvent(ContactChangedEvent.created(contact.getId(), 0, "Erin", "6 Ash St"));
+            assertEquals(token, contactChangeLog.current());
+            return contact.getId();
+        });
+
+        assertEquals(token + 1, contactChangeLog.current());
+        assertEquals(List.of(id), contactChangeLog.changesSince(token).changed().stream().map(ContactChange::id).toList());
+    }
+
+    private Contact save(Contact contact) {
+        Contact saved = entityManager.persist(contact);
+        contactChangeLog.recordChange(saved.getId());
+        return saved;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.kafka.ContactReplicationEvent;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+class ContactChangeStreamTest {
+
+    private ContactChangeStream stream;
+
+    @BeforeEach
+    void setUp() {
+        stream = new ContactChangeStream();
+        ReflectionTestUtils.setField(stream, "maxClients", 10);
+        ReflectionTestUtils.setField(stream, "clientBuffer", 2);
+        ReflectionTestUtils.setField(stream, "heartbeatMs", 60_000L);
+        ReflectionTestUtils.setField(stream, "instanceId", "node-a");
+        stream.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void changesReachEveryClientAndOwnChangesAreNotRepeatedFromKafka() throws InterruptedException {
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        stream.register(first);
+        stream.register(second);
+
+        stream.onContactChanged(ContactChangedEvent.updated(5L, 2, "Anna", "2 Low St"));
+        stream.onReplicaChange(new ContactReplicationEvent("updated", 5L, 2, "Anna", "2 Low St", "node-a"));
+        stream.onReplicaChange(new ContactReplicationEvent("deleted", 6L, 1, null, null, "node-b"));
+
+        for (RecordingEmitter emitter : new RecordingEmitter[] {first, second}) {
+            assertEquals(new ContactChangeStream.Notification("updated", 5L), emitter.next());
+            assertEquals(new ContactChangeStream.Notification("deleted", 6L), emitter.next());
+            assertNull(emitter.sent.poll(100, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void aClientThatFallsBehindIsDisconnectedWithoutHoldingUpTheOthers() throws InterruptedException {
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(stalled);
+        RecordingEmitter fast = new RecordingEmitter();
+        stream.register(slow);
+        stream.register(fast);
+
+        // Only the slow client stalls. The fast one takes each notification before the next is
+        // published, so its buffer never holds more than one while the slow one's overflows.
+        for (long id = 1; id <= 4; id++) {
+            stream.publish(new ContactChangeStream.Notification("created", id));
+            assertEquals(new ContactChangeStream.Notification("created", id), fast.next());
+        }
+
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, stream.clients());
+        stalled.countDown();
+    }
+
+    @Test
+    void heartbeatsOnlyGoToClientsThatWereIdleForTheWholeInterval() throws InterruptedException {
+        RecordingEmitter idle = new RecordingEmitter();
+        RecordingEmitter active = new RecordingEmitter();
+        ContactChangeStream.Subscriber idleSubscriber = stream.register(idle);
+        stream.register(active);
+        ReflectionTestUtils.setField(idleSubscriber, "lastSent", System.nanoTime() - TimeUnit.MINUTES.toNanos(2));
+
+        stream.heartbeat();
+
+        assertEquals("heartbeat", idle.next());
+        assertNull(active.sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /** Records what would be written to the client; optionally stalls on the first write. */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<Object> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch stalled;
+
+        RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingEmitter(CountDownLatch stalled) {
+            this.stalled = stalled;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            for (DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof ContactChangeStream.Notification notification) {
+                    sent.add(notification);
+                } else if (part.getData().toString().contains(":heartbeat")) {
+                    sent.add("heartbeat");
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        Object next() throws InterruptedException {
+            return sent.poll(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.contacts.repository.IndexedContact;
+import com.example.kafka.ContactReplicationEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class ContactSearchIndexTest {
+
+    private final ContactSearchIndex index = new ContactSearchIndex();
+
+    @Test
+    void hitsAreRankedByWhereTheQueryMatched() {
+        index.load(List.of(
+                row(1, "Marta Jones", "1 High St"),
+                row(2, "Anna Martin", "2 Low St"),
+                row(3, "Tamara Smith", "3 Mill Rd"),
+                row(4, "Bob Stone", "4 Martin Square"),
+                row(5, "Carl Berg", "5 Oak Ave")).iterator());
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(index.search("mar", null, 10)));
+        assertEquals(List.of(ContactSearchIndex.RANK_NAME_PREFIX, ContactSearchIndex.RANK_NAME_WORD,
+                        ContactSearchIndex.RANK_NAME, ContactSearchIndex.RANK_ADDRESS),
+                index.search("mar", null, 10).stream().map(ContactSearchIndex.Hit::rank).toList());
+    }
+
+    @Test
+    void pagesFollowOnFromTheLastHit() {
+        List<IndexedContact> rows = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            rows.add(row(i, "Contact " + (char) ('a' + i % 26) + i, i + " Elm Street"));
+        }
+        index.load(rows.iterator());
+
+        List<Long> seen = new ArrayList<>();
+        ContactSearchIndex.Hit after = null;
+        List<ContactSearchIndex.Hit> page;
+        do {
+            page = index.search("elm", after, 10);
+            page.forEach(hit -> seen.add(hit.id()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == 10);
+
+        assertEquals(25, seen.size());
+        assertEquals(25, seen.stream().distinct().count());
+    }
+
+    @Test
+    void matchingIgnoresCaseAndAccentsAndVerifiesTheWholeQuery() {
+        index.load(List.of(
+                row(1, "José Müller", "Straße 1"),
+                row(2, "Joe Sebastian", "Rue 2")).iterator());
+
+        assertEquals(List.of(1L), ids(index.search("JOSE", null, 10)));
+        assertEquals(List.of(1L), ids(index.search("muller", null, 10)));
+        assertEquals(List.of(2L), ids(index.search("oe s", null, 10)));
+        assertEquals(List.of(2L, 1L), ids(index.search("jo", null, 10)));
+    }
+
+    @Test
+    void followsEditsAndDeletesOutsideATransaction() {
+        index.load(List.of(row(1, "Alice", "Elm"), row(2, "Bob", "Oak")).iterator());
+
+        index.index(2L, "Bobby Alison", "Oak", 1);
+        index.remove(1L);
+        index.index(3L, "Alina", "Pine", 0);
+
+        assertEquals(List.of(3L, 2L), ids(index.search("ali", null, 10)));
+        assertTrue(index.search("elm", null, 10).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void changesThatAreNotNewerThanTheIndexedVersionAreIgnored() {
+        index.index(1L, "Alice Renamed", "Elm", 3);
+        index.remove(2L);
+        index.load(List.of(row(1, "Alice", "Elm", 2), row(2, "Bob", "Oak", 0), row(3, "Carol", "Pine", 0)).iterator());
+        // An earlier edit committed on another replica arrives after the later one.
+        index.onReplicaChange(new ContactReplicationEvent("updated", 1L, 1, "Alicia", "Elm", "node-b"));
+        index.onReplicaChange(new ContactReplicationEvent("updated", 2L, 1, "Bobby", "Oak", "node-b"));
+        index.onReplicaChange(new ContactReplicationEvent("updated", 3L, 1, "Caroline", "Pine", "node-b"));
+
+        assertEquals(List.of(1L), ids(index.search("renamed", null, 10)));
+        assertTrue(index.search("alicia", null, 10).isEmpty());
+        assertTrue(index.search("bob", null, 10).isEmpty());
+        assertEquals(List.of(3L), ids(index.search("caroline", null, 10)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void changesMadeOnOtherReplicasAreIndexed() {
+        index.load(List.of(row(1, "Alice", "Elm", 0)).iterator());
+
+        index.onReplicaChange(new ContactReplicationEvent("created", 2L, 0, "Bob", "Oak", "node-b"));
+        index.onReplicaChange(new ContactReplicationEvent("deleted", 1L, 0, null, null, "node-b"));
+
+        assertEquals(List.of(2L), ids(index.search("bob", null, 10)));
+        assertTrue(index.search("alice", null, 10).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void compactionKeepsLiveContactsSearchable() {
+        for (long i = 1; i <= 3000; i++) {
+            index.index(i, "Name " + i, "Street " + i, 0);
+        }
+        for (long i = 1; i <= 2500; i++) {
+            index.remove(i);
+        }
+
+        assertEquals(500, index.size());
+        assertEquals(List.of(2999L), ids(index.search("name 2999", null, 10)));
+        assertEquals(List.of(3000L), ids(index.search("street 3000", null, 10)));
+    }
+
+    @Test
+    void suggestsDistinctNamesByPrefixIgnoringCaseAndAccents() {
+        index.load(List.of(
+                row(1, "Maria Lopez", "1 High St"),
+                row(2, "Márton Kiss", "2 Low St"),
+                row(3, "maria lopez", "3 Mill Rd"),
+                row(4, "Mark Twain", "4 Oak Ave"),
+                row(5, "Anna Mars", "5 Elm St")).iterator());
+
+        assertEquals(List.of("maria lopez", "Mark Twain", "Márton Kiss"), index.suggest("MAR", 10));
+        assertEquals(List.of("maria lopez"), index.suggest("mar", 1));
+        assertEquals(List.of("Márton Kiss"), index.suggest("mart", 10));
+        assertTrue(index.suggest("mars", 10).isEmpty());
+    }
+
+    @Test
+    void commonNamesAreSuggestedFirst() {
+        index.load(List.of(
+                row(1, "Sam Lee", "1 High St"),
+                row(2, "Sara Cole", "2 Low St"),
+                row(3, "Sam Lee", "3 Mill Rd"),
+                row(4, "Sandra Bell", "4 Oak Ave")).iterator());
+        index.index(5L, "Sara Cole", "5 Elm St", 0);
+        index.index(6L, "Sara Cole", "6 Ash St", 0);
+
+        assertEquals(List.of("Sara Cole", "Sam Lee", "Sandra Bell"), index.suggest("sa", 10));
+        assertEquals(List.of("Sara Cole", "Sam Lee"), index.suggest("sa", 2));
+    }
+
+    @Test
+    void suggestionsAreTheMostCommonNamesOfTheWholePrefixRange() {
+        // Skewed counts, spread over the key order so that the most common names sit in many blocks.
+        Random random = new Random(42);
+        Map<String, Integer> counts = new TreeMap<>();
+        List<IndexedContact> rows = new ArrayList<>();
+        for (long id = 1; id <= 4000; id++) {
+            String name = String.format("Name %04d", random.nextInt(1 + random.nextInt(1009)) * 389 % 1009);
+            counts.merge(name, 1, Integer::sum);
+            rows.add(row(id, name, "Street"));
+        }
+        index.load(rows.iterator());
+        assertEquals(mostCommon(counts, "name", 10), index.suggest("name", 10));
+        assertEquals(mostCommon(counts, "name 05", 10), index.suggest("name 05", 10));
+
+        // Left pending: a name that becomes the most common, a new one, and a contact that is gone.
+        for (long id = 4001; id <= 4100; id++) {
+            index.index(id, "Name 0500", "Street", 0);
+            counts.merge("Name 0500", 1, Integer::sum);
+        }
+        index.index(4101L, "Name 2000", "Street", 0);
+        counts.merge("Name 2000", 1, Integer::sum);
+        index.remove(1L);
+        counts.merge(rows.get(0).name(), -1, Integer::sum);
+        counts.values().removeIf(count -> count == 0);
+
+        assertEquals(mostCommon(counts, "name", 10), index.suggest("name", 10));
+        assertEquals(mostCommon(counts, "name 0", 50), index.suggest("name 0", 50));
+        assertEquals("Name 0500", index.suggest("name", 1).get(0));
+    }
+
+    @Test
+    void suggestionsFollowChangesBeforeAndAfterTheyAreMerged() {
+        for (long i = 1; i <= 6000; i++) {
+            index.index(i, String.format("Name %05d", i), "Street", 0);
+        }
+        index.index(6001L, "Name 00001", "Street", 0);
+        index.remove(1L);
+        index.index(2L, "Renamed", "Street", 1);
+
+        assertEquals(List.of("Name 00001", "Name 00003"), index.suggest("name 0000", 2));
+        index.remove(6001L);
+        assertEquals(List.of("Name 00003", "Name 00004"), index.suggest("name 0000", 2));
+        assertEquals(List.of("Renamed"), index.suggest("re", 10));
+        assertEquals(List.of("Name 06000"), index.suggest("name 06", 10));
+    }
+
+    private static List<String> mostCommon(Map<String, Integer> counts, String prefix, int limit) {
+        return counts.entrySet().stream()
+                .filter(entry -> entry.getKey().toLowerCase().startsWith(prefix))
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static List<Long> ids(List<ContactSearchIndex.Hit> hits) {
+        return hits.stream().map(ContactSearchIndex.Hit::id).toList();
+    }
+
+    private static IndexedContact row(long id, String name, String address) {
+        return row(id, name, address, 0);
+    }
+
+    private static IndexedContact row(long id, String name, String address, long version) {
+        return new IndexedContact(id, name, address, version);
+    }
+}
@@ -2,7 +2,10 @@ package com.example.contacts.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -11,15 +14,21 @@ import com.example.contacts.dto.ContactResponse;
 import com.example.contacts.dto.WeatherInfo;
 import com.example.contacts.model.Contact;
 import com.example.contacts.model.User;
+import com.example.contacts.repository.ContactPictureRepository;
 import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.PictureBlobRepository;
 import com.example.contacts.repository.UserRepository;
+import com.example.contacts.storage.PictureStore;
+import com.example.kafka.EditContactEvent;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
 import javax.imageio.ImageIO;
 import org.junit.jupiter.api.BeforeEach;
@@ -28,7 +37,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mock.web.MockMultipartFile;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,12 +52,36 @@ class ContactServiceImageProcessingTest {
     @Mock
     private ContactRepository contactRepository;
 
+    @Mock
+    private ContactPictureRepository contactPictureRepository;
+
+    @Mock
+    private PictureBlobRepository pictureBlobRepository;
+
+    @Mock
+    private PictureStore pictureStore;
+
     @Mock
     private UserRepository userRepository;
 
     @Mock
     private WeatherClient weatherClient;
 
+    @Mock
+    private ContactSearchIndex contactSearchIndex;
+
+    @Mock
+    private ContactChangeLog contactChangeLog;
+
+    @Mock
+    private EventOutbox eventOutbox;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private PictureProcessor pictureProcessor = new PictureProcessor(List.of(128, 48), 40_000_000);
+
     @InjectMocks
     private ContactService contactService;
 
@@ -67,7 +102,7 @@ class ContactServiceImageProcessingTest {
     }
 
     @Test
-    void createShouldResizeOversizedImages() throws IOException {
+    void createShouldResizeOversizedImages() throws Exception {
         BufferedImage original = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
         var graphics = original.createGraphics();
         try {
@@ -91,15 +126,30 @@ class ContactServiceImageProcessingTest {
 
         ArgumentCaptor<Contact> contactCaptor = ArgumentCaptor.forClass(Contact.class);
         verify(contactRepository).save(contactCaptor.capture());
-        Contact saved = contactCaptor.getValue();
+        Contact contact = contactCaptor.getValue();
+        byte[] stored = storedPicture(contact.getPictureHash());
+        assertTrue(contact.isHasPicture());
+        assertEquals(stored.length, contact.getPictureSize());
+        assertEquals(1, contact.getPictureVersion());
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(stored));
+        assertEquals(hash, contact.getPictureHash());
+        assertEquals("/api/contacts/123/picture?v=" + hash.substring(0, 16), response.getPictureUrl());
+        verify(pictureBlobRepository).acquire(eq(hash), eq("image/jpeg"), eq((long) stored.length), eq("48,128"), any(Instant.class));
+        assertEquals("/api/contacts/123/picture?v=" + hash.substring(0, 16) + "&size=48 48w, "
+                + "/api/contacts/123/picture?v=" + hash.substring(0, 16) + "&size=128 128w, "
+                + response.getPictureUrl() + " 500w", response.getPictureSrcset());
+        for (int width : List.of(48, 128)) {
+            BufferedImage variant = ImageIO.read(new ByteArrayInputStream(storedPicture(PictureProcessor.variantKey(hash, width))));
+            assertEquals(width, variant.getWidth());
+            assertEquals(Math.round(width * 0.6), variant.getHeight());
+        }
 
-        BufferedImage processed = ImageIO.read(new ByteArrayInputStream(saved.getPictureData()));
+        BufferedImage processed = ImageIO.read(new ByteArrayInputStream(stored));
         assertNotNull(processed, "Processed image should be readable");
-        int maxWidth = maxImageWidth();
+        int maxWidth = PictureProcessor.MAX_IMAGE_WIDTH;
         assertEquals(maxWidth, processed.getWidth(), "Image should be resized to max width");
         int expectedHeight = (int) Math.round(((double) maxWidth / 1000) * 600);
         assertEquals(expectedHeight, processed.getHeight(), "Image height should maintain aspect ratio");
-        assertEquals("image/jpeg", saved.getPictureContentType());
     }
 
     @Test
@@ -121,15 +171,46 @@ class ContactServiceImageProcessingTest {
 
         contactService.create(request, "alice");
 
-        ArgumentCaptor<Contact> contactCaptor = ArgumentCaptor.forClass(Contact.class);
-        verify(contactRepository).save(contactCaptor.capture());
-        Contact saved = contactCaptor.getValue();
+        byte[] stored = storedPicture(captureHash());
+        verify(pictureBlobRepository).acquire(any(), eq("image/png"), anyLong(), any(), any(Instant.class));
 
-        BufferedImage processed = ImageIO.read(new ByteArrayInputStream(saved.getPictureData()));
+        BufferedImage processed = ImageIO.read(new ByteArrayInputStream(stored));
         assertNotNull(processed, "Processed image should be readable");
         assertEquals(400, processed.getWidth(), "Image width should remain unchanged");
         assertEquals(300, processed.getHeight(), "Image height should remain unchanged");
-        assertEquals("image/png", saved.getPictureContentType());
+    }
+
+    @Test
+    void updateReleasesTheBlobOfTheReplacedPicture() throws IOException {
+        Contact existing = new Contact("John Doe", "123 Main St", owner);
+        existing.setId(123L);
+        existing.setHasPicture(true);
+        existing.setPictureHash("a".repeat(64));
+        when(contactRepository.findByIdAndOwner(123L, owner)).thenReturn(Optional.of(existing));
+        BufferedImage original = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+
+        ContactRequest request = new ContactRequest();
+        request.setName("John Doe");
+        request.setAddress("123 Main St");
+        request.setPicture(toMultipart("picture", "image/png", original, "png"));
+        contactService.update(123L, request, "alice");
+
+        verify(pictureStore).put(eq(existing.getPictureHash()), any(byte[].class));
+        verify(contactPictureRepository).deleteByContactId(123L);
+        verify(pictureBlobRepository).release(eq("a".repeat(64)), any(Instant.class));
+        verify(eventOutbox).append(any(), eq("123"), any(EditContactEvent.class));
+    }
+
+    private String captureHash() {
+        ArgumentCaptor<Contact> contactCaptor = ArgumentCaptor.forClass(Contact.class);
+        verify(contactRepository).save(contactCaptor.capture());
+        return contactCaptor.getValue().getPictureHash();
+    }
+
+    private byte[] storedPicture(String hash) {
+        ArgumentCaptor<byte[]> data = ArgumentCaptor.forClass(byte[].class);
+        verify(pictureStore).put(eq(hash), data.capture());
+        return data.getValue();
     }
 
     private MockMultipartFile toMultipart(String name, String contentType, BufferedImage image, String format) throws IOException {
@@ -138,14 +219,4 @@ class ContactServiceImageProcessingTest {
             return new MockMultipartFile(name, name + "." + format, contentType, baos.toByteArray());
         }
     }
-
-    private int maxImageWidth() {
-        try {
-            Field field = ContactService.class.getDeclaredField("MAX_IMAGE_WIDTH");
-            field.setAccessible(true);
-            return field.getInt(null);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new IllegalStateException("Unable to read MAX_IMAGE_WIDTH", e);
-        }
-    }
 }
@@ -0,0 +1,171 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.contacts.dto.ContactPageResponse;
+import com.example.contacts.model.PictureStatus;
+import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.ContactSummary;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class ContactServiceListingTest {
+
+    static {
+        System.setProperty("net.bytebuddy.experimental", "true");
+    }
+
+    @Mock
+    private ContactRepository contactRepository;
+
+    @Mock
+    private WeatherClient weatherClient;
+
+    @Mock
+    private ContactSearchIndex contactSearchIndex;
+
+    @Mock
+    private ContactChangeLog contactChangeLog;
+
+    @InjectMocks
+    private ContactService contactService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(contactService, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(contactService, "maxPageSize", 3);
+    }
+
+    @Test
+    void firstPageReturnsCursorPointingAtLastItem() {
+        when(contactRepository.findFirstPage(any(Pageable.class)))
+                .thenReturn(contacts("Anna", 1L, "Bob", 2L, "Carl", 3L));
+        when(weatherClient.fetchWeatherBatch(anyCollection())).thenReturn(Map.of());
+
+        ContactPageResponse page = contactService.listContacts(null, null, null);
+
+        assertEquals(2, page.getItems().size());
+        assertEquals("Bob", page.getItems().get(1).getName());
+        assertNotNull(page.getNext());
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(contactRepository).findFirstPage(pageable.capture());
+        assertEquals(3, pageable.getValue().getPageSize(), "One extra row is fetched to detect a next page");
+
+        ContactCursor cursor = ContactCursor.decode(page.getNext());
+        assertEquals("Bob", cursor.name());
+        assertEquals(2L, cursor.id());
+    }
+
+    @Test
+    void followingPageSeeksPastCursorAndCapsRequestedLimit() {
+        String cursor = new ContactCursor("Bob", 2L).encode();
+        when(contactRepository.searchPageAfter(eq("o"), eq("Bob"), eq(2L), any(Pageable.class)))
+                .thenReturn(contacts("Dora", 4L));
+        when(weatherClient.fetchWeatherBatch(anyCollection())).thenReturn(Map.of());
+
+        ContactPageResponse page = contactService.listContacts(" o ", cursor, 1000);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNext());
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(contactRepository).searchPageAfter(eq("o"), eq("Bob"), eq(2L), pageable.capture());
+        assertEquals(4, pageable.getValue().getPageSize(), "Limit should be capped at max-page-size");
+    }
+
+    @Test
+    void indexedSearchKeepsTheRankedOrderAndContinuesFromTheLastHit() {
+        when(contactSearchIndex.isReady()).thenReturn(true);
+        when(contactSearchIndex.search(eq("bo"), eq(null), eq(3))).thenReturn(List.of(
+                new ContactSearchIndex.Hit(2L, ContactSearchIndex.RANK_NAME_PREFIX, "bob"),
+                new ContactSearchIndex.Hit(1L, ContactSearchIndex.RANK_NAME, "anna bolt"),
+                new ContactSearchIndex.Hit(3L, ContactSearchIndex.RANK_ADDRESS, "carl")));
+        when(contactRepository.findSummariesByIdIn(List.of(2L, 1L)))
+                .thenReturn(contacts("Anna Bolt", 1L, "Bob", 2L));
+        when(weatherClient.fetchWeatherBatch(anyCollection())).thenReturn(Map.of());
+
+        ContactPageResponse page = contactService.listContacts("bo", null, null);
+
+        assertEquals(List.of("Bob", "Anna Bolt"), page.getItems().stream().map(item -> item.getName()).toList());
+        ContactCursor cursor = ContactCursor.decode(page.getNext());
+        assertEquals(new ContactSearchIndex.Hit(1L, ContactSearchIndex.RANK_NAME, "anna bolt"), cursor.toHit());
+    }
+
+    @Test
+    void aSearchKeepsPagingTheWayItsFirstPageWasServed() {
+        // The index became ready after the first page came from the database.
+        lenient().when(contactSearchIndex.isReady()).thenReturn(true);
+        when(contactRepository.searchPageAfter(eq("bo"), eq("Bob"), eq(2L), any(Pageable.class)))
+                .thenReturn(contacts("Bonnie", 5L));
+        when(weatherClient.fetchWeatherBatch(anyCollection())).thenReturn(Map.of());
+
+        ContactPageResponse page = contactService.listContacts("bo", new ContactCursor("Bob", 2L).encode(), null);
+
+        assertEquals(List.of("Bonnie"), page.getItems().stream().map(item -> item.getName()).toList());
+        verify(contactSearchIndex, never()).search(any(), any(), anyInt());
+    }
+
+    @Test
+    void rankedCursorsAreRejectedWhileTheIndexIsUnavailable() {
+        String ranked = new ContactCursor(ContactSearchIndex.RANK_NAME, "anna bolt", 1L).encode();
+
+        assertThrows(IllegalArgumentException.class, () -> contactService.listContacts("bo", ranked, null));
+    }
+
+    @Test
+    void cursorSurvivesNamesWithSeparators() {
+        ContactCursor cursor = new ContactCursor("O'Neil: Jr., Émile", 99L);
+
+        assertEquals(cursor, ContactCursor.decode(cursor.encode()));
+        ContactCursor ranked = new ContactCursor(ContactSearchIndex.RANK_NAME_WORD, "o'neil: jr.", 99L);
+        assertEquals(ranked, ContactCursor.decode(ranked.encode()));
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> contactService.listContacts(null, "not a cursor", null));
+    }
+
+    @Test
+    void suggestionsComeFromTheIndexOnceItIsBuiltAndFromTheDatabaseBefore() {
+        when(contactSearchIndex.isReady()).thenReturn(false, true);
+        when(contactRepository.findNamesStartingWith(eq("an"), any(Pageable.class))).thenReturn(List.of("Anna"));
+        when(contactSearchIndex.suggest("an", 10)).thenReturn(List.of("Anna", "Anton"));
+
+        assertEquals(List.of("Anna"), contactService.suggestNames("an", null));
+        assertEquals(List.of("Anna", "Anton"), contactService.suggestNames("an", null));
+        assertEquals(List.of(), contactService.suggestNames(" ", 5));
+        assertThrows(IllegalArgumentException.class, () -> contactService.suggestNames("an", 0));
+    }
+
+    private List<ContactSummary> contacts(Object... nameIdPairs) {
+        List<ContactSummary> contacts = new ArrayList<>();
+        for (int i = 0; i < nameIdPairs.length; i += 2) {
+            contacts.add(new ContactSummary((Long) nameIdPairs[i + 1], (String) nameIdPairs[i], "Main St " + i,
+                    false, null, PictureStatus.READY, "alice", Instant.parse("2024-10-18T08:30:00Z")));
+        }
+        return contacts;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import org.junit.jupiter.api.Test;
+
+class ImageScalerTest {
+
+    @Test
+    void downscalesToTheTargetWidthKeepingTheAspectRatio() {
+        BufferedImage source = new BufferedImage(3000, 2000, BufferedImage.TYPE_3BYTE_BGR);
+
+        BufferedImage scaled = ImageScaler.scaleToWidth(source, 500, BufferedImage.TYPE_INT_RGB);
+
+        assertEquals(500, scaled.getWidth());
+        assertEquals(333, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+    }
+
+    @Test
+    void imagesWithinTheTargetAreNotCopied() {
+        BufferedImage source = new BufferedImage(400, 300, BufferedImage.TYPE_3BYTE_BGR);
+
+        assertSame(source, ImageScaler.scaleToWidth(source, 500, BufferedImage.TYPE_INT_RGB));
+    }
+
+    @Test
+    void fineDetailIsAveragedRatherThanAliased() {
+        // A one-pixel checkerboard: a single nearest or bilinear step at 8:1 samples only black or
+        // only white pixels, an area average gives uniform mid grey.
+        BufferedImage source = new BufferedImage(4000, 800, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                source.setRGB(x, y, (x + y) % 2 == 0 ? 0xFFFFFF : 0x000000);
+            }
+        }
+
+        BufferedImage scaled = ImageScaler.scaleToWidth(source, 500, BufferedImage.TYPE_INT_RGB);
+
+        for (int y = 1; y < scaled.getHeight() - 1; y += 7) {
+            for (int x = 1; x < scaled.getWidth() - 1; x += 7) {
+                int grey = scaled.getRGB(x, y) & 0xFF;
+                assertTrue(Math.abs(grey - 128) < 16, "pixel (" + x + "," + y + ") is " + grey);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.contacts.model.OutboxEvent;
+import com.example.contacts.repository.OutboxEventRepository;
+import com.example.kafka.EditContactEvent;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the outbox against H2 with a mocked producer. Nothing runs in a test transaction, so the
+ * relay only sees rows once they are committed, as it would in production.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "app.outbox.poll-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({EventOutbox.class, OutboxRelay.class})
+class OutboxRelayTest {
+
+    static {
+        System.setProperty("net.bytebuddy.experimental", "true");
+    }
+
+    @Autowired
+    private EventOutbox eventOutbox;
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean(name = "outboxKafkaTemplate")
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @AfterEach
+    void clearOutbox() {
+        outboxEventRepository.deleteAll();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void committedEventsArePublishedWithTheirTypeAndDeleted() throws InterruptedException {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        transactionTemplate.executeWithoutResult(status ->
+                eventOutbox.append("edit-contact", "7", new EditContactEvent(7L, "alice", "Alice", "Old Street", "New Street", 2)));
+
+        ArgumentCaptor<ProducerRecord<String, String>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, timeout(5_000)).send(sent.capture());
+        ProducerRecord<String, String> record = sent.getValue();
+        assertEquals("edit-contact", record.topic());
+        assertEquals("7", record.key());
+        assertTrue(record.value().contains("\"contactId\":7"), record.value());
+        assertTrue(record.value().contains("\"newAddress\":\"New Street\""), record.value());
+        assertEquals(EditContactEvent.class.getName(),
+                new String(record.headers().lastHeader("__TypeId__").value(), StandardCharsets.UTF_8));
+        awaitEmptyOutbox();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void eventsThatFailToSendStayQueuedForTheNextBatch() {
+        outboxEventRepository.save(new OutboxEvent("signup", null, "com.example.kafka.SignupEvent", "{\"username\":\"bob\"}"));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(0, outboxRelay.relayBatch());
+        assertEquals(1, outboxEventRepository.count());
+
+        assertEquals(1, outboxRelay.relayBatch());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aFailedEventHoldsBackTheLaterEventsOfItsKey() {
+        OutboxEvent first = outboxEventRepository.save(editEvent("7", 1));
+        OutboxEvent second = outboxEventRepository.save(editEvent("7", 2));
+        OutboxEvent other = outboxEventRepository.save(editEvent("8", 1));
+        List<String> claimedWhileSending = new ArrayList<>();
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenAnswer(invocation -> {
+                    claimedWhileSending.add(outboxEventRepository.findById(first.getId()).orElseThrow().getClaimedBy());
+                    return CompletableFuture.failedFuture(new IllegalStateException("broker down"));
+                })
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(1, outboxRelay.relayBatch());
+
+        assertEquals(List.of("contacts-service"), claimedWhileSending);
+        assertEquals(List.of(first.getId(), second.getId()),
+                outboxEventRepository.findAll().stream().map(OutboxEvent::getId).sorted().toList());
+        assertTrue(outboxEventRepository.findAll().stream().allMatch(event -> event.getClaimedBy() == null));
+        assertFalse(outboxEventRepository.existsById(other.getId()));
+        assertEquals(2, outboxRelay.relayBatch());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void eventsWaitWhileAnEarlierOneOfTheirKeyIsLeasedElsewhere() {
+        OutboxEvent leased = editEvent("9", 1);
+        leased.setClaimedBy("other-instance");
+        leased.setClaimedUntil(Instant.now().plusSeconds(60));
+        outboxEventRepository.save(leased);
+        outboxEventRepository.save(editEvent("9", 2));
+
+        assertEquals(0, outboxRelay.relayBatch());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        assertEquals(2, outboxEventRepository.count());
+    }
+
+    @Test
+    void rolledBackEventsAreNeverPublished() {
+        transactionTemplate.executeWithoutResult(status -> {
+            eventOutbox.append("edit-contact", "8", new EditContactEvent(8L, "carol", "Carol", "Old Street", "New Street", 1));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(0, outboxRelay.relayBatch());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void eventsCanOnlyBeAppendedInsideATransaction() {
+        assertThrows(IllegalTransactionStateException.class,
+                () -> eventOutbox.append("edit-contact", "9", new EditContactEvent(9L, "dave", "Dave", "Old Street", "New Street", 1)));
+    }
+
+    private static OutboxEvent editEvent(String key, long version) {
+        return new OutboxEvent("edit-contact", key, EditContactEvent.class.getName(),
+                "{\"contactId\":" + key + ",\"version\":" + version + "}");
+    }
+
+    private void awaitEmptyOutbox() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (outboxEventRepository.count() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, outboxEventRepository.count());
+    }
+}
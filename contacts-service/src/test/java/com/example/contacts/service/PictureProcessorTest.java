@@ -0,0 +1,99 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Uploads PNGs whose headers declare very large dimensions. They compress to a few kilobytes, so
+ * only the decoder can make them expensive; the allocation counter of the test thread shows how
+ * much heap decoding actually took.
+ */
+class PictureProcessorTest {
+
+    private static final long MAX_PIXELS = 40_000_000;
+
+    private final PictureProcessor processor = new PictureProcessor(List.of(48, 128), MAX_PIXELS);
+
+    @Test
+    void largeImagesAreDecodedSubsampledWithinABoundedAllocation() throws IOException {
+        // 6000x4000 RGB: a full decode alone is a 72MB raster.
+        MockMultipartFile upload = blankPng(6000, 4000);
+
+        long before = allocatedBytes();
+        ContactService.PicturePayload payload = processor.process(upload);
+        long allocated = allocatedBytes() - before;
+
+        BufferedImage stored = ImageIO.read(new ByteArrayInputStream(payload.data()));
+        assertEquals(PictureProcessor.MAX_IMAGE_WIDTH, stored.getWidth());
+        assertEquals(334, stored.getHeight());
+        assertTrue(allocated < 32L * 1024 * 1024, "decoding allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void imagesOverThePixelBudgetAreRejectedFromTheHeader() throws IOException {
+        MockMultipartFile upload = blankPng(10_000, 10_000);
+
+        long before = allocatedBytes();
+        ResponseStatusException rejected = assertThrows(ResponseStatusException.class, () -> processor.process(upload));
+        long allocated = allocatedBytes() - before;
+
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode());
+        assertTrue(allocated < 4L * 1024 * 1024, "rejecting allocated " + allocated + " bytes");
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /** Writes an all-black 8-bit RGB PNG row by row, without ever holding its raster. */
+    private static MockMultipartFile blankPng(int width, int height) throws IOException {
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(idat)) {
+            byte[] row = new byte[1 + width * 3];
+            for (int y = 0; y < height; y++) {
+                deflater.write(row);
+            }
+        }
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream ihdr = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.write(new byte[] {8, 2, 0, 0, 0});
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(png);
+        out.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+        writeChunk(out, "IHDR", header.toByteArray());
+        writeChunk(out, "IDAT", idat.toByteArray());
+        writeChunk(out, "IEND", new byte[0]);
+        return new MockMultipartFile("picture", "huge.png", "image/png", png.toByteArray());
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
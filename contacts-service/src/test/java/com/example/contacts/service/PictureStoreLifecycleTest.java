@@ -0,0 +1,181 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.contacts.dto.ContactRequest;
+import com.example.contacts.dto.ContactResponse;
+import com.example.contacts.model.Contact;
+import com.example.contacts.model.ContactPicture;
+import com.example.contacts.model.User;
+import com.example.contacts.repository.ContactPictureRepository;
+import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.PictureBlobRepository;
+import com.example.contacts.repository.UserRepository;
+import com.example.contacts.storage.FileSystemPictureStore;
+import com.example.contacts.storage.PictureStore;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Walks a legacy picture through migration, shared references and garbage collection against an
+ * in-memory H2 database and a temporary picture store. Nothing runs in a test transaction because
+ * the variant backfill works on its own threads and must see committed rows.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pictures;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ContactService.class, ContactSearchIndex.class, ContactChangeLog.class, PictureMigrationJob.class, PictureGarbageCollector.class, PictureVariantBackfillJob.class,
+        PictureProcessor.class, PictureWorkQueue.class, FileSystemPictureStore.class})
+class PictureStoreLifecycleTest {
+
+    private static final byte[] PICTURE = png(64, 32);
+
+    static {
+        System.setProperty("net.bytebuddy.experimental", "true");
+    }
+
+    @TempDir
+    static Path storeDir;
+
+    @DynamicPropertySource
+    static void pictureStore(DynamicPropertyRegistry registry) {
+        registry.add("app.pictures.store-dir", () -> storeDir.resolve("store").toString());
+        registry.add("app.pictures.async.spool-dir", () -> storeDir.resolve("spool").toString());
+    }
+
+    @Autowired
+    private ContactService contactService;
+    @Autowired
+    private PictureMigrationJob migrationJob;
+    @Autowired
+    private PictureGarbageCollector garbageCollector;
+    @Autowired
+    private PictureVariantBackfillJob variantBackfillJob;
+    @Autowired
+    private PictureStore pictureStore;
+    @Autowired
+    private PictureBlobRepository pictureBlobRepository;
+    @Autowired
+    private ContactPictureRepository contactPictureRepository;
+    @Autowired
+    private ContactRepository contactRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private WeatherClient weatherClient;
+
+    @MockBean
+    private EventOutbox eventOutbox;
+
+    @Test
+    void legacyPicturesAreMigratedSharedAndCollectedOnceUnreferenced() throws Exception {
+        User owner = userRepository.save(new User("alice", "secret", "ROLE_USER"));
+        Contact first = legacyContact("First", owner);
+        Contact second = legacyContact("Second", owner);
+
+        migrationJob.migrate();
+
+        String hash = PictureProcessor.sha256(PICTURE);
+        assertEquals(0, contactPictureRepository.count());
+        assertEquals(hash, contactRepository.findById(first.getId()).orElseThrow().getPictureHash());
+        assertEquals(2, pictureBlobRepository.findById(hash).orElseThrow().getRefCount());
+        var metadata = contactService.loadPictureMetadata(first.getId());
+        assertEquals("image/png", metadata.contentType());
+        assertArrayEquals(PICTURE, contactService.loadPicture(metadata, metadata.hash()).resource().getContentAsByteArray());
+
+        assertEquals(1, variantBackfillJob.backfillAll());
+        assertEquals("48,128", pictureBlobRepository.findById(hash).orElseThrow().getVariants());
+        String thumbnail = PictureProcessor.variantKey(hash, 48);
+        assertEquals(thumbnail, contactService.pictureKey(metadata, 40));
+        assertEquals(hash, contactService.pictureKey(metadata, 400));
+        assertEquals(0, variantBackfillJob.backfillAll());
+
+        Instant afterGracePeriod = Instant.now().plus(Duration.ofHours(1));
+        contactService.delete(first.getId(), "alice");
+        assertEquals(0, garbageCollector.collectBefore(afterGracePeriod));
+        assertTrue(pictureStore.get(hash).isPresent());
+
+        contactService.delete(second.getId(), "alice");
+        assertEquals(0, garbageCollector.collectBefore(Instant.now().minus(Duration.ofHours(1))));
+        assertEquals(1, garbageCollector.collectBefore(afterGracePeriod));
+        assertFalse(pictureStore.get(hash).isPresent());
+        assertFalse(pictureStore.exists(thumbnail));
+        assertFalse(pictureBlobRepository.existsById(hash));
+    }
+
+    @Test
+    void filesOfAnUploadThatRolledBackAreCollectedAfterTheGracePeriod() {
+        userRepository.save(new User("bob", "secret", "ROLE_USER"));
+        ContactRequest request = new ContactRequest();
+        request.setName("Carol");
+        request.setAddress("Street");
+        request.setPicture(new MockMultipartFile("picture", "picture.png", "image/png", png(200, 100)));
+
+        String hash = transactionTemplate.execute(status -> {
+            ContactResponse created = contactService.create(request, "bob");
+            status.setRollbackOnly();
+            return contactRepository.findById(created.getId()).orElseThrow().getPictureHash();
+        });
+
+        assertTrue(pictureStore.get(hash).isPresent());
+        assertTrue(pictureStore.exists(PictureProcessor.variantKey(hash, 48)));
+        assertEquals(0, pictureBlobRepository.findById(hash).orElseThrow().getRefCount());
+        assertEquals(0, garbageCollector.collectBefore(Instant.now().minus(Duration.ofHours(1))));
+        assertEquals(1, garbageCollector.collectBefore(Instant.now().plus(Duration.ofHours(1))));
+        assertFalse(pictureStore.get(hash).isPresent());
+        assertFalse(pictureStore.exists(PictureProcessor.variantKey(hash, 48)));
+    }
+
+    private static byte[] png(int width, int height) {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Contact legacyContact(String name, User owner) {
+        Contact contact = new Contact(name, "Street", owner);
+        contact.setHasPicture(true);
+        contact.setPictureSize(PICTURE.length);
+        return transactionTemplate.execute(status -> {
+            Contact saved = contactRepository.save(contact);
+            contactPictureRepository.save(new ContactPicture(saved, PICTURE, "image/png"));
+            return saved;
+        });
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.contacts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import com.example.contacts.dto.WeatherInfo;
+import com.example.contacts.config.WeatherHttpClientConfig;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+class WeatherClientTest {
+
+    private static final String BASE_URL = "http://weather.test";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private MockRestServiceServer server;
+    private WeatherClient weatherClient;
+
+    @BeforeEach
+    void setUp() {
+        RestClient.Builder builder = RestClient.builder();
+        server = MockRestServiceServer.bindTo(builder).build();
+        weatherClient = newClient(builder, BASE_URL);
+    }
+
+    private WeatherClient newClient(RestClient.Builder builder, String baseUrl) {
+        WeatherClient client = configure(new WeatherClient(), builder, baseUrl);
+        client.init();
+        return client;
+    }
+
+    private WeatherClient configure(WeatherClient client, RestClient.Builder builder, String baseUrl) {
+        ReflectionTestUtils.setField(client, "restClientBuilder", builder);
+        ReflectionTestUtils.setField(client, "baseUrl", baseUrl);
+        ReflectionTestUtils.setField(client, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.setField(client, "cacheSoftTtlSeconds", 120L);
+        ReflectionTestUtils.setField(client, "errorCacheTtlSeconds", 30L);
+        ReflectionTestUtils.setField(client, "errorCacheSoftTtlSeconds", 10L);
+        ReflectionTestUtils.setField(client, "refreshThreads", 1);
+        ReflectionTestUtils.setField(client, "refreshQueueCapacity", 16);
+        ReflectionTestUtils.setField(client, "ticker", (Ticker) nanos::get);
+        ReflectionTestUtils.setField(client, "batchDeadlineMs", 5_000L);
+        ReflectionTestUtils.setField(client, "maxConcurrentRequests", 4);
+        ReflectionTestUtils.setField(client, "bulkheadMaxWaitMs", 5_000L);
+        ReflectionTestUtils.setField(client, "circuitFailureThreshold", 5);
+        ReflectionTestUtils.setField(client, "circuitOpenSeconds", 30L);
+        ReflectionTestUtils.setField(client, "batchSize", 500);
+        ReflectionTestUtils.setField(client, "cacheMaxEntries", 10_000L);
+        return client;
+    }
+
+    @Test
+    void batchDeduplicatesAddressesAndSendsMissesInOneRequest() {
+        server.expect(requestTo(BASE_URL + "/api/weather?location=Berlin"))
+                .andRespond(withSuccess("{\"location\":\"Berlin\",\"description\":\"Cloudy\",\"temperatureCelsius\":16.5}",
+                        MediaType.APPLICATION_JSON));
+        server.expect(requestTo(BASE_URL + "/api/weather/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().json("{\"locations\":[\"Paris\",\"Rome\"]}", true))
+                .andRespond(withSuccess("[{\"location\":\"Paris\",\"description\":\"Sunny\",\"temperatureCelsius\":24.0},"
+                        + "{\"location\":\"Rome\",\"description\":\"Windy\",\"temperatureCelsius\":27.5}]",
+                        MediaType.APPLICATION_JSON));
+
+        weatherClient.fetchWeather("Berlin");
+        Map<String, WeatherInfo> result = weatherClient.fetchWeatherBatch(
+                Arrays.asList("Paris", "berlin ", "Rome", " paris", "", null));
+
+        server.verify();
+        assertEquals("Sunny", result.get("Paris").getDescription());
+        assertEquals("Sunny", result.get(" paris").getDescription());
+        assertEquals("Cloudy", result.get("berlin ").getDescription());
+        assertEquals("Windy", result.get("Rome").getDescription());
+        assertEquals("No address provided", result.get("").getDescription());
+        assertEquals("No address provided", result.get(null).getDescription());
+    }
+
+    @Test
+    void batchServesEverythingFromCacheOnSecondCall() {
+        server.expect(requestTo(BASE_URL + "/api/weather/batch"))
+                .andRespond(withSuccess("[{\"location\":\"Oslo\",\"description\":\"Snow showers\",\"temperatureCelsius\":-2.0}]",
+                        MediaType.APPLICATION_JSON));
+
+        weatherClient.fetchWeatherBatch(List.of("Oslo"));
+        Map<String, WeatherInfo> cached = weatherClient.fetchWeatherBatch(List.of("OSLO", "Oslo"));
+
+        server.verify();
+        assertEquals("Snow showers", cached.get("OSLO").getDescription());
+        assertEquals(-2.0, cached.get("Oslo").getTemperatureCelsius());
+    }
+
+    @Test
+    void batchFallsBackForEveryMissWhenWeatherServiceFails() {
+        server.expect(requestTo(BASE_URL + "/api/weather/batch")).andRespond(withServerError());
+
+        Map<String, WeatherInfo> result = weatherClient.fetchWeatherBatch(List.of("Lisbon", "Madrid"));
+
+        server.verify();
+        assertEquals("Weather service unavailable", result.get("Lisbon").getDescription());
+        assertEquals("Madrid", result.get("Madrid").getLocation());
+        assertEquals("Weather service unavailable", weatherClient.fetchWeather("madrid").getDescription());
+    }
+
+    @Test
+    void cacheRecordsHitsMissesAndLoads() {
+        server.expect(requestTo(BASE_URL + "/api/weather?location=Vienna"))
+                .andRespond(withSuccess("{\"location\":\"Vienna\",\"description\":\"Overcast\",\"temperatureCelsius\":12.0}",
+                        MediaType.APPLICATION_JSON));
+
+        weatherClient.fetchWeather("Vienna");
+        weatherClient.fetchWeather("vienna");
+        weatherClient.fetchWeather(" VIENNA ");
+
+        server.verify();
+        CacheStats stats = weatherClient.cacheStats();
+        assertEquals(1, stats.missCount());
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.loadSuccessCount());
+        assertTrue(stats.totalLoadTime() > 0);
+    }
+
+    @Test
+    void cacheStaysWithinConfiguredMaximumEntryCount() {
+        ReflectionTestUtils.setField(weatherClient, "cacheMaxEntries", 50L);
+        weatherClient.init();
+        server.expect(ExpectedCount.manyTimes(), requestTo(BASE_URL + "/api/weather/batch"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+
+        for (int round = 0; round < 20; round++) {
+            List<String> addresses = IntStream.range(round * 100, round * 100 + 100)
+                    .mapToObj(i -> "Street " + i)
+                    .toList();
+            weatherClient.fetchWeatherBatch(addresses);
+        }
+
+        // Caffeine weighs an entry once its load future completes, so eviction may trail the last response.
+        waitUntil(() -> weatherClient.cacheSize() <= 50);
+        assertTrue(weatherClient.cacheSize() <= 50, "cache must not grow past cache-max-entries");
+        assertTrue(weatherClient.cacheStats().evictionCount() >= 1950);
+    }
+
+    @Test
+    void staleEntryIsServedImmediatelyAndRefreshedInBackground() {
+        runRefreshesInline();
+        server.expect(requestTo(BASE_URL + "/api/weather?location=Vienna"))
+                .andRespond(withSuccess("{\"location\":\"Vienna\",\"description\":\"Overcast\",\"temperatureCelsius\":12.0}",
+                        MediaType.APPLICATION_JSON));
+        server.expect(requestTo(BASE_URL + "/api/weather?location=Vienna"))
+                .andRespond(withSuccess("{\"location\":\"Vienna\",\"description\":\"Sunny\",\"temperatureCelsius\":18.0}",
+                        MediaType.APPLICATION_JSON));
+
+        weatherClient.fetchWeather("Vienna");
+        advance(150);
+
+        assertEquals("Overcast", weatherClient.fetchWeather("Vienna").getDescription(), "stale value is served");
+        assertEquals("Sunny", weatherClient.fetchWeather("Vienna").getDescription(), "refreshed value replaces it");
+        server.verify();
+        assertEquals(1, weatherClient.cacheStats().missCount());
+    }
+
+    @Test
+    void entryPastHardTtlIsLoadedOnTheCallerThread() {
+        server.expect(ExpectedCount.twice(), requestTo(BASE_URL + "/api/weather?location=Vienna"))
+                .andRespond(withSuccess("{\"location\":\"Vienna\",\"description\":\"Overcast\",\"temperatureCelsius\":12.0}",
+                        MediaType.APPLICATION_JSON));
+
+        weatherClient.fetchWeather("Vienna");
+        advance(301);
+        weatherClient.fetchWeather("Vienna");
+
+        server.verify();
+        assertEquals(2, weatherClient.cacheStats().missCount());
+    }
+
+    @Test
+    void fallbackIsRefreshedInBackgroundOnceWeatherServiceRecovers() {
+        runRefreshesInline();
+        server.expect(requestTo(BASE_URL + "/api/weather/batch")).andRespond(withServerError());
+        server.expect(requestTo(BASE_URL + "/api/weather/batch"))
+                .andExpect(content().json("{\"locations\":[\"Lisbon\",\"Madrid\"]}", true))
+                .andRespond(withSuccess("[{\"location\":\"Lisbon\",\"description\":\"Sunny\",\"temperatureCelsius\":25.0},"
+                        + "{\"location\":\"Madrid\",\"description\":\"Hot\",\"temperatureCelsius\":33.0}]",
+                        MediaType.APPLICATION_JSON));
+
+        weatherClient.fetchWeatherBatch(List.of("Lisbon", "Madrid"));
+        advance(15);
+        Map<String, WeatherInfo> stale = weatherClient.fetchWeatherBatch(List.of("Lisbon", "Madrid"));
+        Map<String, WeatherInfo> recovered = weatherClient.fetchWeatherBatch(List.of("Lisbon", "Madrid"));
+
+        server.verify();
+        assertEquals("Weather service unavailable", stale.get("Lisbon").getDescription());
+        assertEquals("Sunny", recovered.get("Lisbon").getDescription());
+        assertEquals("Hot", recovered.get("Madrid").getDescription());
+    }
+
+    @Test
+    void failedRefreshKeepsServingTheLastGoodValue() {
+        runRefreshesInline();
+        server.expect(requestTo(BASE_URL + "/api/weather?location=Oslo"))
+                .andRespond(withSuccess("{\"location\":\"Oslo\",\"description\":\"Snow\",\"temperatureCelsius\":-3.0}",
+                        MediaType.APPLICATION_JSON));
+        server.expect(requestTo(BASE_URL + "/api/weather?location=Oslo")).andRespond(withServerError());
+
+        weatherClient.fetchWeather("Oslo");
+        advance(150);
+        weatherClient.fetchWeather("Oslo");
+        advance(5);
+
+        assertEquals("Snow", weatherClient.fetchWeather("Oslo").getDescription());
+        server.verify();
+    }
+
+    private void advance(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private void runRefreshesInline() {
+        ReflectionTestUtils.setField(weatherClient, "refreshExecutor", (Executor) Runnable::run);
+    }
+
+    @Test
+    void concurrentMissesForOneKeyShareASingleUpstreamCall() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/api/weather", exchange -> {
+            upstreamCalls.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respondWithJson(exchange, "{\"location\":\"Cluj\",\"description\":\"Sunny\",\"temperatureCelsius\":21.0}");
+        });
+        stub.start();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            WeatherClient client = newClient(RestClient.builder(),
+                    "http://localhost:" + stub.getAddress().getPort());
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<WeatherInfo>> lookups = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                String location = i % 2 == 0 ? "Cluj" : " cluj ";
+                lookups.add(callers.submit(() -> {
+                    start.await();
+                    return client.fetchWeather(location);
+                }));
+            }
+            start.countDown();
+            // Hold the upstream response until every caller has asked the cache for the key.
+            waitUntil(() -> client.cacheStats().requestCount() >= 500);
+            release.countDown();
+
+            for (Future<WeatherInfo> lookup : lookups) {
+                assertEquals("Sunny", lookup.get(10, TimeUnit.SECONDS).getDescription());
+            }
+            assertEquals(1, upstreamCalls.get());
+            assertEquals(1, client.cacheStats().missCount());
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    @Test
+    void slowBatchesArePendingAtTheDeadlineAndRunWithinTheConcurrencyCap() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/api/weather/batch", exchange -> {
+            upstreamCalls.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            respondWithJson(exchange, "[{\"location\":\"Street\",\"description\":\"Sunny\",\"temperatureCelsius\":20.0}]");
+        });
+        stub.start();
+        try {
+            WeatherClient client = newClient(RestClient.builder(), "http://localhost:" + stub.getAddress().getPort());
+            ReflectionTestUtils.setField(client, "batchSize", 1);
+            ReflectionTestUtils.setField(client, "maxConcurrentRequests", 2);
+            ReflectionTestUtils.setField(client, "batchDeadlineMs", 100L);
+            client.init();
+            List<String> streets = IntStream.range(0, 6).mapToObj(i -> "Street " + i).toList();
+
+            Map<String, WeatherInfo> first = client.fetchWeatherBatch(streets);
+
+            assertTrue(first.values().stream().allMatch(WeatherInfo::isPending));
+            Thread.sleep(100);
+            assertEquals(2, upstreamCalls.get(), "only max-concurrent-requests batch calls may be open");
+
+            release.countDown();
+            waitUntil(() -> client.cacheStats().loadSuccessCount() >= streets.size());
+            Map<String, WeatherInfo> second = client.fetchWeatherBatch(streets);
+
+            assertTrue(second.values().stream().allMatch(info -> "Sunny".equals(info.getDescription())));
+            assertEquals(streets.size(), upstreamCalls.get());
+            assertTrue(maxInFlight.get() <= 2);
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    @Test
+    void slowWeatherServiceTimesOutOpensTheCircuitAndRecoversThroughAProbe() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        AtomicBoolean slow = new AtomicBoolean(true);
+        HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/api/weather", exchange -> {
+            upstreamCalls.incrementAndGet();
+            if (slow.get()) {
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(2));
+            }
+            respondWithJson(exchange, "{\"location\":\"Iasi\",\"description\":\"Clear\",\"temperatureCelsius\":15.0}");
+        });
+        stub.start();
+        WeatherHttpClientConfig transport = new WeatherHttpClientConfig();
+        try (CloseableHttpClient httpClient = transport.weatherHttpClient(200, 200, 4)) {
+            WeatherClient client = configure(new WeatherClient(), RestClient.builder(),
+                    "http://localhost:" + stub.getAddress().getPort());
+            ReflectionTestUtils.setField(client, "weatherRequestFactory", transport.weatherRequestFactory(httpClient));
+            ReflectionTestUtils.setField(client, "circuitFailureThreshold", 2);
+            client.init();
+
+            long started = System.nanoTime();
+            assertEquals("Weather service unavailable", client.fetchWeather("Iasi").getDescription());
+            assertEquals("Weather service unavailable", client.fetchWeather("Brasov").getDescription());
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2), "read timeout must cut slow calls short");
+            assertEquals(CircuitBreaker.State.OPEN, client.circuitState());
+
+            assertEquals("Weather service unavailable", client.fetchWeather("Sibiu").getDescription());
+            assertEquals(2, upstreamCalls.get(), "an open circuit must not reach weather-service");
+            assertEquals(1, client.rejectedCalls());
+
+            slow.set(false);
+            advance(31);
+            assertEquals("Clear", client.fetchWeather("Cluj").getDescription());
+            assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+            assertEquals(3, upstreamCalls.get());
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+
+    private static void respondWithJson(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.contacts.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+class FileSystemPictureStoreTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    private Path root;
+
+    @Test
+    void storesBlobsInShardedDirectoriesWithoutLeavingTemporaryFiles() throws IOException {
+        FileSystemPictureStore store = new FileSystemPictureStore(root);
+
+        store.put(HASH, new byte[] {1, 2, 3});
+
+        Path expected = root.resolve("9f").resolve("86").resolve(HASH);
+        assertEquals(expected, store.pathFor(HASH));
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(expected));
+        try (Stream<Path> files = Files.list(expected.getParent())) {
+            assertEquals(1, files.count());
+        }
+        Resource resource = store.get(HASH).orElseThrow();
+        assertTrue(resource.isFile());
+        assertEquals(3, resource.contentLength());
+    }
+
+    @Test
+    void identicalContentIsWrittenOnce() throws IOException {
+        FileSystemPictureStore store = new FileSystemPictureStore(root);
+        store.put(HASH, new byte[] {1, 2, 3});
+        Path path = store.pathFor(HASH);
+        FileTime written = FileTime.from(Instant.parse("2024-01-01T00:00:00Z"));
+        Files.setLastModifiedTime(path, written);
+
+        store.put(HASH, new byte[] {1, 2, 3});
+
+        assertEquals(written, Files.getLastModifiedTime(path));
+    }
+
+    @Test
+    void deleteRemovesTheBlob() {
+        FileSystemPictureStore store = new FileSystemPictureStore(root);
+        store.put(HASH, new byte[] {1});
+
+        assertTrue(store.delete(HASH));
+        assertTrue(store.get(HASH).isEmpty());
+        assertFalse(store.delete(HASH));
+    }
+
+    @Test
+    void rejectsKeysThatAreNotSha256Hashes() {
+        FileSystemPictureStore store = new FileSystemPictureStore(root);
+
+        assertThrows(IllegalArgumentException.class, () -> store.put("../../etc/passwd", new byte[] {1}));
+        assertThrows(IllegalArgumentException.class, () -> store.get(HASH.toUpperCase()));
+    }
+}
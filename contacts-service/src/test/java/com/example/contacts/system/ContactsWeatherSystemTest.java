@@ -1,15 +1,23 @@
 package com.example.contacts.system;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
 import com.example.contacts.ContactsServiceApplication;
 import com.example.contacts.config.TestInfrastructureConfig;
+import com.example.contacts.dto.ContactPageResponse;
 import com.example.contacts.dto.ContactResponse;
-import com.example.contacts.model.Contact;
-import com.example.contacts.model.User;
+import com.example.contacts.model.PictureStatus;
+import com.example.contacts.repository.ChangeSequenceRepository;
+import com.example.contacts.repository.ContactPictureRepository;
 import com.example.contacts.repository.ContactRepository;
+import com.example.contacts.repository.DeletedContactRepository;
+import com.example.contacts.repository.ContactSummary;
+import com.example.contacts.repository.OutboxEventRepository;
+import com.example.contacts.repository.PictureBlobRepository;
 import com.example.contacts.repository.UserRepository;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import org.junit.jupiter.api.BeforeAll;
@@ -21,6 +29,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.web.client.RestTemplate;
@@ -46,6 +55,11 @@ class ContactsWeatherSystemTest {
     static void overrideWeatherBaseUrl(DynamicPropertyRegistry registry) {
         registry.add("app.weather.base-url", () -> WEATHER_BASE_URL);
         registry.add("app.weather.cache-ttl-seconds", () -> 1);
+        registry.add("app.weather.batch-deadline-ms", () -> 10_000);
+        registry.add("app.pictures.store-dir",
+                () -> Path.of(System.getProperty("java.io.tmpdir"), "contacts-system-test-pictures").toString());
+        registry.add("app.pictures.async.spool-dir",
+                () -> Path.of(System.getProperty("java.io.tmpdir"), "contacts-system-test-spool").toString());
     }
 
     @Autowired
@@ -54,9 +68,24 @@ class ContactsWeatherSystemTest {
     @MockBean
     private ContactRepository contactRepository;
 
+    @MockBean
+    private ContactPictureRepository contactPictureRepository;
+
+    @MockBean
+    private PictureBlobRepository pictureBlobRepository;
+
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private OutboxEventRepository outboxEventRepository;
+
+    @MockBean
+    private ChangeSequenceRepository changeSequenceRepository;
+
+    @MockBean
+    private DeletedContactRepository deletedContactRepository;
+
     @BeforeAll
     static void verifyWeatherServiceReachable() {
         System.setProperty("net.bytebuddy.experimental", "true");
@@ -71,22 +100,17 @@ class ContactsWeatherSystemTest {
 
     @Test
     void listContactsReturnsWeatherFromWeatherService() {
-        User owner = new User("owner", "secret", "ROLE_USER");
-        owner.setId(100L);
-
-        Contact contact = new Contact("John Doe", "123 Main St", owner);
-        contact.setId(1L);
         Instant updatedAt = Instant.parse("2024-10-18T10:15:30Z");
-        contact.setCreatedAt(updatedAt);
-        contact.setUpdatedAt(updatedAt);
+        ContactSummary contact = new ContactSummary(1L, "John Doe", "123 Main St", false, null, PictureStatus.READY, "owner", updatedAt);
 
-        when(contactRepository.findAllByOrderByNameAsc()).thenReturn(List.of(contact));
+        when(contactRepository.findFirstPage(any(Pageable.class))).thenReturn(List.of(contact));
 
-        ContactResponse[] response = restTemplate.getForObject("/api/contacts", ContactResponse[].class);
+        ContactPageResponse response = restTemplate.getForObject("/api/contacts", ContactPageResponse.class);
 
        assertThat(response).isNotNull();
-       assertThat(response).hasSize(1);
-       ContactResponse contactResponse = response[0];
+       assertThat(response.getItems()).hasSize(1);
+       assertThat(response.getNext()).isNull();
+       ContactResponse contactResponse = response.getItems().get(0);
        assertThat(contactResponse.getName()).isEqualTo("John Doe");
        assertThat(contactResponse.getWeather())
                 .as("Weather payload should be populated from weather service at %s", WEATHER_BASE_URL)
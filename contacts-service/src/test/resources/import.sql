@@ -0,0 +1 @@
+INSERT INTO change_sequences (name, seq) VALUES ('contacts', 0), ('contacts-pruned', 0);
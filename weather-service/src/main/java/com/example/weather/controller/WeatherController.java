@@ -1,13 +1,20 @@
 package com.example.weather.controller;
 
+import com.example.weather.dto.WeatherBatchRequest;
 import com.example.weather.dto.WeatherResponse;
 import com.example.weather.service.WeatherGeneratorService;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/weather")
@@ -15,9 +22,27 @@ public class WeatherController {
 
     @Autowired
     private WeatherGeneratorService weatherGeneratorService;
+    @Value("${app.weather.batch.max-locations:1000}")
+    private int maxBatchLocations;
 
     @GetMapping
     public ResponseEntity<WeatherResponse> getWeather(@RequestParam(name = "location", required = false) String location) {
         return ResponseEntity.ok(weatherGeneratorService.getWeather(location));
     }
+
+    /**
+     * Resolves several locations in one round trip. The response keeps the order of the request,
+     * so callers can zip both lists back together.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<WeatherResponse>> getWeatherBatch(@RequestBody WeatherBatchRequest request) {
+        List<String> locations = request.getLocations() != null ? request.getLocations() : List.of();
+        if (locations.size() > maxBatchLocations) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxBatchLocations + " locations are allowed per batch.");
+        }
+        return ResponseEntity.ok(locations.stream()
+                .map(weatherGeneratorService::getWeather)
+                .toList());
+    }
 }
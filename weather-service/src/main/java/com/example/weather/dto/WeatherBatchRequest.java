@@ -0,0 +1,15 @@
+package com.example.weather.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherBatchRequest {
+
+    private List<String> locations = new ArrayList<>();
+}
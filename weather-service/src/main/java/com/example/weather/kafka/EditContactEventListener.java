@@ -1,29 +1,76 @@
 package com.example.weather.kafka;
 
 import com.example.kafka.EditContactEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+/**
+ * Consumes edit-contact events one poll at a time. Throughput is counted per partition as
+ * {@code weather.edit.events.consumed}; lag per partition comes from the consumer's own
+ * {@code kafka.consumer.fetch.manager.records.lag} metric.
+ */
 @Component
 @Slf4j
 public class EditContactEventListener {
 
+  private final MeterRegistry meterRegistry;
+  private final DistributionSummary batchSizes;
+  private final Map<Integer, Counter> consumedByPartition = new ConcurrentHashMap<>();
+
+  public EditContactEventListener(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.batchSizes = DistributionSummary.builder("weather.edit.events.batch.size")
+        .description("Edit contact events delivered per poll")
+        .register(meterRegistry);
+  }
+
   @KafkaListener(
     topics = "${app.kafka.topics.editContact}",
     groupId = "weather-service-edit-listener",
     containerFactory = "kafkaListenerContainerFactory"
   )
-  public void onEdit(EditContactEvent event) {
-    try {
-      log.info("Received edit contact event for user '{}', registered at {}", event.getUsername(), event.getUpdatedAt());
-    } catch (IllegalArgumentException e) {
-      // nu retry → ok
-      log.warn("Invalid event: {}", event);
-    } catch (Exception e) {
-      // IMPORTANT → rethrow
-      throw e;
+  public void onEdits(@Payload List<EditContactEvent> events,
+                      @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions,
+                      @Header(KafkaHeaders.OFFSET) List<Long> offsets) {
+    batchSizes.record(events.size());
+    for (int i = 0; i < events.size(); i++) {
+      try {
+        onEdit(events.get(i));
+      } catch (RuntimeException e) {
+        // The error handler commits everything before index i and retries from there.
+        throw new BatchListenerFailedException("Failed to process edit contact event at partition "
+            + partitions.get(i) + ", offset " + offsets.get(i), e, i);
+      }
+      consumed(partitions.get(i)).increment();
+    }
+    log.info("Processed {} edit contact events", events.size());
+  }
+
+  private void onEdit(EditContactEvent event) {
+    if (event == null || event.getName() == null || event.getName().isBlank()) {
+      // Not retried: DefaultErrorHandler sends it straight to the DLT.
+      throw new IllegalArgumentException("Edit contact event without a contact name: " + event);
     }
+    log.debug("Received edit of contact id={} version {} by '{}', registered at {}",
+        event.getContactId(), event.getVersion(), event.getOwner(), event.getUpdatedAt());
+  }
+
+  private Counter consumed(int partition) {
+    return consumedByPartition.computeIfAbsent(partition, p -> Counter.builder("weather.edit.events.consumed")
+        .description("Edit contact events processed")
+        .tag("partition", String.valueOf(p))
+        .register(meterRegistry));
   }
 
 }
@@ -25,10 +25,11 @@ public class KafkaConfig {
   }
 
   @Bean
-  public NewTopic editContactTopic(@Value("${app.kafka.topics.editContact}") String topicName) {
+  public NewTopic editContactTopic(@Value("${app.kafka.topics.editContact}") String topicName,
+                                   @Value("${app.kafka.topics.editContactPartitions:10}") int partitions) {
     return TopicBuilder
         .name(topicName)
-        .partitions(10)
+        .partitions(partitions)
         .replicas(3)
         .build();
   }
@@ -64,17 +65,28 @@ public class KafkaConfig {
     return errorHandler;
   }
 
+  /**
+   * Batch listener factory for the edit-contact topic. Each poll is handed to the listener as one
+   * list and its offsets are committed once per batch. With one consumer per partition (by default)
+   * every partition is drained by its own thread. A {@link org.springframework.kafka.listener.BatchListenerFailedException}
+   * tells the error handler which record failed: the records before it are committed, the failed
+   * one is retried and eventually sent to the DLT, and the rest of the batch is redelivered.
+   */
   @Bean(name = "kafkaListenerContainerFactory")
   public ConcurrentKafkaListenerContainerFactory<String, EditContactEvent> kafkaListenerContainerFactory(
       ConsumerFactory<String, EditContactEvent> consumerFactory,
-      DefaultErrorHandler errorHandler
+      DefaultErrorHandler errorHandler,
+      @Value("${app.kafka.topics.editContactPartitions:10}") int partitions,
+      @Value("${app.kafka.listener.concurrency:0}") int concurrency
   ) {
 
     ConcurrentKafkaListenerContainerFactory<String, EditContactEvent> factory
         = new ConcurrentKafkaListenerContainerFactory<>();
     factory.setConsumerFactory(consumerFactory);
     factory.setCommonErrorHandler(errorHandler);
-    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+    factory.setBatchListener(true);
+    factory.setConcurrency(concurrency > 0 ? concurrency : partitions);
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
 
     return factory;
   }
@@ -13,6 +13,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -57,4 +58,24 @@ class WeatherControllerIntegrationTest {
 
         verify(weatherGeneratorService).getWeather(null);
     }
+
+    @Test
+    void returnsWeatherForEveryLocationInBatchInRequestOrder() throws Exception {
+        when(weatherGeneratorService.getWeather("Berlin")).thenReturn(new WeatherResponse("Berlin", "Cloudy", 16.5));
+        when(weatherGeneratorService.getWeather("Paris")).thenReturn(new WeatherResponse("Paris", "Sunny", 24.0));
+
+        mockMvc.perform(post("/api/weather/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"locations\":[\"Paris\",\"Berlin\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].location").value("Paris"))
+                .andExpect(jsonPath("$[0].description").value("Sunny"))
+                .andExpect(jsonPath("$[1].location").value("Berlin"))
+                .andExpect(jsonPath("$[1].temperatureCelsius").value(16.5));
+
+        verify(weatherGeneratorService).getWeather(eq("Paris"));
+        verify(weatherGeneratorService).getWeather(eq("Berlin"));
+    }
 }
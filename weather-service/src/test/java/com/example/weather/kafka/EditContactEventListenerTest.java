@@ -0,0 +1,50 @@
+package com.example.weather.kafka;
+
+import com.example.kafka.EditContactEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EditContactEventListenerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EditContactEventListener listener = new EditContactEventListener(registry);
+
+    @Test
+    void countsProcessedEventsPerPartition() {
+        listener.onEdits(
+                List.of(event("alice"), event("bob"), event("carol")),
+                List.of(0, 3, 3),
+                List.of(10L, 20L, 21L));
+
+        assertEquals(1.0, consumed("0"));
+        assertEquals(2.0, consumed("3"));
+        assertEquals(3.0, registry.get("weather.edit.events.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void reportsTheIndexOfTheFirstFailedEventSoEarlierOnesAreCommitted() {
+        BatchListenerFailedException failure = assertThrows(BatchListenerFailedException.class,
+                () -> listener.onEdits(
+                        List.of(event("alice"), event(" "), event("carol")),
+                        List.of(1, 1, 1),
+                        List.of(5L, 6L, 7L)));
+
+        assertEquals(1, failure.getIndex());
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        assertEquals(1.0, consumed("1"));
+    }
+
+    private static EditContactEvent event(String name) {
+        return new EditContactEvent(1L, "owner", name, "Old Street", "New Street", 1);
+    }
+
+    private double consumed(String partition) {
+        return registry.get("weather.edit.events.consumed").tag("partition", partition).counter().count();
+    }
+}